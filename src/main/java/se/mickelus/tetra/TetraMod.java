@@ -45,7 +45,9 @@ import se.mickelus.tetra.blocks.geode.*;
 import se.mickelus.tetra.blocks.workbench.BasicWorkbenchBlock;
 import se.mickelus.tetra.blocks.workbench.WorkbenchContainer;
 import se.mickelus.tetra.blocks.workbench.WorkbenchTile;
+import se.mickelus.tetra.capabilities.PlayerCapabilityTracker;
 import se.mickelus.tetra.client.model.ModularModelLoader;
+import se.mickelus.tetra.data.DataHashPacket;
 import se.mickelus.tetra.data.DataManager;
 import se.mickelus.tetra.data.UpdateDataPacket;
 import se.mickelus.tetra.generation.FeatureEntry;
@@ -61,8 +63,11 @@ import se.mickelus.tetra.items.toolbelt.ToolbeltContainer;
 import se.mickelus.tetra.items.toolbelt.ToolbeltModule;
 import se.mickelus.tetra.loot.FortuneBonusCondition;
 import se.mickelus.tetra.module.*;
+import se.mickelus.tetra.module.harvest.AreaHarvester;
+import se.mickelus.tetra.module.harvest.BreakEffectsPacket;
 import se.mickelus.tetra.module.improvement.DestabilizationEffect;
 import se.mickelus.tetra.module.improvement.HonePacket;
+import se.mickelus.tetra.module.improvement.ProgressionTracker;
 import se.mickelus.tetra.module.improvement.SettlePacket;
 import se.mickelus.tetra.module.schema.BookEnchantSchema;
 import se.mickelus.tetra.module.schema.CleanseSchema;
@@ -92,6 +97,9 @@ public class TetraMod {
 
         MinecraftForge.EVENT_BUS.register(this);
         MinecraftForge.EVENT_BUS.register(new ItemEffectHandler());
+        MinecraftForge.EVENT_BUS.register(AreaHarvester.class);
+        MinecraftForge.EVENT_BUS.register(new ProgressionTracker());
+        MinecraftForge.EVENT_BUS.register(new PlayerCapabilityTracker());
         MinecraftForge.EVENT_BUS.register(new DataManager());
         MinecraftForge.EVENT_BUS.register(TetraMod.proxy);
         MinecraftForge.EVENT_BUS.register(BlockLookTrigger.instance);
@@ -102,15 +110,16 @@ public class TetraMod {
 
         LootConditionManager.registerCondition(new FortuneBonusCondition.Serializer());
 
-        ItemUpgradeRegistry itemUpgradeRegistry = new ItemUpgradeRegistry();
-        itemUpgradeRegistry.registerSchema(new BookEnchantSchema());
-
+        // the module registry is set up first, so that modules are in place when the upgrade registry reacts to changed module data
         ModuleRegistry moduleRegistry = new ModuleRegistry();
         moduleRegistry.registerModuleType(new ResourceLocation(MOD_ID, "basic_module"), BasicModule::new);
         moduleRegistry.registerModuleType(new ResourceLocation(MOD_ID, "basic_major_module"), BasicMajorModule::new);
         moduleRegistry.registerModuleType(new ResourceLocation(MOD_ID, "multi_major_module"), MultiSlotModule::new);
         moduleRegistry.registerModuleType(new ResourceLocation(MOD_ID, "toolbelt_module"), ToolbeltModule::new);
 
+        ItemUpgradeRegistry itemUpgradeRegistry = new ItemUpgradeRegistry();
+        itemUpgradeRegistry.registerSchema(new BookEnchantSchema());
+
         new TetraItemGroup();
 
         CriteriaTriggers.register(BlockLookTrigger.instance);
@@ -191,6 +200,8 @@ public class TetraMod {
         packetHandler.registerPacket(HonePacket.class, HonePacket::new);
         packetHandler.registerPacket(SettlePacket.class, SettlePacket::new);
         packetHandler.registerPacket(UpdateDataPacket.class, UpdateDataPacket::new);
+        packetHandler.registerPacket(DataHashPacket.class, DataHashPacket::new);
+        packetHandler.registerPacket(BreakEffectsPacket.class, BreakEffectsPacket::new);
 
         WorkbenchTile.init(packetHandler);
 
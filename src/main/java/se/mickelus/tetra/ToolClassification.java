@@ -0,0 +1,238 @@
+package se.mickelus.tetra;
+
+import com.google.common.collect.Sets;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.material.Material;
+import net.minecraft.tags.BlockTags;
+import net.minecraft.tags.Tag;
+import net.minecraftforge.common.ToolType;
+
+import java.util.Set;
+
+/**
+ * Classifies block states by the tools that are effective against them and the tools that can harvest them. Classifications are
+ * resolved for every registered block state at once and stored in arrays indexed by block state id, so that lookups done while mining,
+ * striking or picking tools from the toolbelt boil down to an array index. The table is rebuilt lazily when block tags are reloaded.
+ */
+public class ToolClassification {
+
+    /**
+     * Below are lists of blocks, materials and tags that describe what different tools can harvest and efficiently destroy. Note that these
+     * are copies of what the vanilla tool counterparts explicitly state that they can destroy and harvest, some blocks (and required tiers)
+     * are not listed here as that's part of that block's implementation.
+     */
+
+    // copy of AxeItem.EFFECTIVE_ON, blocks that the axe explicitly state it can efficiently DESTROY
+    private static final Set<Block> axeDestroyBlocks = Sets.newHashSet(Blocks.OAK_PLANKS, Blocks.SPRUCE_PLANKS, Blocks.BIRCH_PLANKS, Blocks.JUNGLE_PLANKS, Blocks.ACACIA_PLANKS, Blocks.DARK_OAK_PLANKS, Blocks.BOOKSHELF, Blocks.OAK_WOOD, Blocks.SPRUCE_WOOD, Blocks.BIRCH_WOOD, Blocks.JUNGLE_WOOD, Blocks.ACACIA_WOOD, Blocks.DARK_OAK_WOOD, Blocks.OAK_LOG, Blocks.SPRUCE_LOG, Blocks.BIRCH_LOG, Blocks.JUNGLE_LOG, Blocks.ACACIA_LOG, Blocks.DARK_OAK_LOG, Blocks.CHEST, Blocks.PUMPKIN, Blocks.CARVED_PUMPKIN, Blocks.JACK_O_LANTERN, Blocks.MELON, Blocks.LADDER, Blocks.SCAFFOLDING, Blocks.OAK_BUTTON, Blocks.SPRUCE_BUTTON, Blocks.BIRCH_BUTTON, Blocks.JUNGLE_BUTTON, Blocks.DARK_OAK_BUTTON, Blocks.ACACIA_BUTTON, Blocks.OAK_PRESSURE_PLATE, Blocks.SPRUCE_PRESSURE_PLATE, Blocks.BIRCH_PRESSURE_PLATE, Blocks.JUNGLE_PRESSURE_PLATE, Blocks.DARK_OAK_PRESSURE_PLATE, Blocks.ACACIA_PRESSURE_PLATE);
+
+    // copy of hardcoded values in AxeItem, materials that the axe explicitly state it can efficiently HARVEST
+    private static final Set<Material> axeHarvestMaterials = Sets.newHashSet(Material.WOOD, Material.PLANTS, Material.TALL_PLANTS, Material.BAMBOO);
+
+    // copy of PickaxeItem.EFFECTIVE_ON, blocks that the pickaxe explicitly state it can efficiently DESTROY
+    private static final Set<Block> pickaxeDestroyBlocks = Sets.newHashSet(Blocks.ACTIVATOR_RAIL, Blocks.COAL_ORE, Blocks.COBBLESTONE, Blocks.DETECTOR_RAIL, Blocks.DIAMOND_BLOCK, Blocks.DIAMOND_ORE, Blocks.POWERED_RAIL, Blocks.GOLD_BLOCK, Blocks.GOLD_ORE, Blocks.ICE, Blocks.IRON_BLOCK, Blocks.IRON_ORE, Blocks.LAPIS_BLOCK, Blocks.LAPIS_ORE, Blocks.MOSSY_COBBLESTONE, Blocks.NETHERRACK, Blocks.PACKED_ICE, Blocks.BLUE_ICE, Blocks.RAIL, Blocks.REDSTONE_ORE, Blocks.SANDSTONE, Blocks.CHISELED_SANDSTONE, Blocks.CUT_SANDSTONE, Blocks.CHISELED_RED_SANDSTONE, Blocks.CUT_RED_SANDSTONE, Blocks.RED_SANDSTONE, Blocks.STONE, Blocks.GRANITE, Blocks.POLISHED_GRANITE, Blocks.DIORITE, Blocks.POLISHED_DIORITE, Blocks.ANDESITE, Blocks.POLISHED_ANDESITE, Blocks.STONE_SLAB, Blocks.SMOOTH_STONE_SLAB, Blocks.SANDSTONE_SLAB, Blocks.PETRIFIED_OAK_SLAB, Blocks.COBBLESTONE_SLAB, Blocks.BRICK_SLAB, Blocks.STONE_BRICK_SLAB, Blocks.NETHER_BRICK_SLAB, Blocks.QUARTZ_SLAB, Blocks.RED_SANDSTONE_SLAB, Blocks.PURPUR_SLAB, Blocks.SMOOTH_QUARTZ, Blocks.SMOOTH_RED_SANDSTONE, Blocks.SMOOTH_SANDSTONE, Blocks.SMOOTH_STONE, Blocks.STONE_BUTTON, Blocks.STONE_PRESSURE_PLATE, Blocks.POLISHED_GRANITE_SLAB, Blocks.SMOOTH_RED_SANDSTONE_SLAB, Blocks.MOSSY_STONE_BRICK_SLAB, Blocks.POLISHED_DIORITE_SLAB, Blocks.MOSSY_COBBLESTONE_SLAB, Blocks.END_STONE_BRICK_SLAB, Blocks.SMOOTH_SANDSTONE_SLAB, Blocks.SMOOTH_QUARTZ_SLAB, Blocks.GRANITE_SLAB, Blocks.ANDESITE_SLAB, Blocks.RED_NETHER_BRICK_SLAB, Blocks.POLISHED_ANDESITE_SLAB, Blocks.DIORITE_SLAB, Blocks.SHULKER_BOX, Blocks.BLACK_SHULKER_BOX, Blocks.BLUE_SHULKER_BOX, Blocks.BROWN_SHULKER_BOX, Blocks.CYAN_SHULKER_BOX, Blocks.GRAY_SHULKER_BOX, Blocks.GREEN_SHULKER_BOX, Blocks.LIGHT_BLUE_SHULKER_BOX, Blocks.LIGHT_GRAY_SHULKER_BOX, Blocks.LIME_SHULKER_BOX, Blocks.MAGENTA_SHULKER_BOX, Blocks.ORANGE_SHULKER_BOX, Blocks.PINK_SHULKER_BOX, Blocks.PURPLE_SHULKER_BOX, Blocks.RED_SHULKER_BOX, Blocks.WHITE_SHULKER_BOX, Blocks.YELLOW_SHULKER_BOX);
+
+    // copy of hardcoded values in PickaxeItem, materials that the pickaxe explicitly state it can efficiently HARVEST
+    private static final Set<Material> pickaxeHarvestMaterials = Sets.newHashSet(Material.IRON, Material.ANVIL, Material.ROCK);
+
+    // copy of ShovelItem.EFFECTIVE_ON, blocks that the shovel explicitly state it can efficiently DESTROY
+    private static final Set<Block> shovelDestroyBlocks = Sets.newHashSet(Blocks.CLAY, Blocks.DIRT, Blocks.COARSE_DIRT, Blocks.PODZOL, Blocks.FARMLAND, Blocks.GRASS_BLOCK, Blocks.GRAVEL, Blocks.MYCELIUM, Blocks.SAND, Blocks.RED_SAND, Blocks.SNOW_BLOCK, Blocks.SNOW, Blocks.SOUL_SAND, Blocks.GRASS_PATH, Blocks.WHITE_CONCRETE_POWDER, Blocks.ORANGE_CONCRETE_POWDER, Blocks.MAGENTA_CONCRETE_POWDER, Blocks.LIGHT_BLUE_CONCRETE_POWDER, Blocks.YELLOW_CONCRETE_POWDER, Blocks.LIME_CONCRETE_POWDER, Blocks.PINK_CONCRETE_POWDER, Blocks.GRAY_CONCRETE_POWDER, Blocks.LIGHT_GRAY_CONCRETE_POWDER, Blocks.CYAN_CONCRETE_POWDER, Blocks.PURPLE_CONCRETE_POWDER, Blocks.BLUE_CONCRETE_POWDER, Blocks.BROWN_CONCRETE_POWDER, Blocks.GREEN_CONCRETE_POWDER, Blocks.RED_CONCRETE_POWDER, Blocks.BLACK_CONCRETE_POWDER);
+
+    // copy of hardcoded values in ShovelItem, blocks that the shovel explicitly state it can efficiently HARVEST
+    private static final Set<Block> shovelHarvestBlocks = Sets.newHashSet(Blocks.SNOW, Blocks.SNOW_BLOCK);
+
+    // copy of hardcoded values in SwordItem, materials & tag that it explicitly state it can efficiently DESTROY
+    private static final Set<Material> cuttingDestroyMaterials = Sets.newHashSet(Material.PLANTS, Material.TALL_PLANTS, Material.CORAL, Material.GOURD, Material.WEB);
+    private static final Set<Tag<Block>> cuttingDestroyTags = Sets.newHashSet(BlockTags.LEAVES);
+
+    // copy of hardcoded values in SwordItem, blocks that the sword explicitly state it can efficiently HARVEST
+    private static final Set<Block> cuttingHarvestBlocks = Sets.newHashSet(Blocks.COBWEB);
+
+    private static final ToolType[] knownTools = { ToolType.AXE, ToolType.PICKAXE, ToolTypes.cut, ToolType.SHOVEL };
+
+    // set if the state is effectively destroyed by any tool, mirrors how cutting materials were previously matched regardless of tool
+    private static final byte anyToolFlag = 1 << 4;
+
+    private static volatile Table table;
+
+    /**
+     * Checks if the given tool can efficiently destroy the given block state, either based on the lists above or on the harvest tool of
+     * the block state.
+     * @param toolType A tool type
+     * @param blockState A block state
+     * @return true if the tool is effective against the block state
+     */
+    public static boolean isToolEffective(ToolType toolType, BlockState blockState) {
+        Table table = getTable();
+        int id = Block.getStateId(blockState);
+        if (id < 0 || id >= table.flags.length) {
+            return computeToolEffective(toolType, blockState) || toolType.equals(blockState.getHarvestTool());
+        }
+
+        byte flags = table.flags[id];
+        if ((flags & anyToolFlag) != 0) {
+            return true;
+        }
+
+        for (int i = 0; i < knownTools.length; i++) {
+            if (knownTools[i] == toolType) {
+                if ((flags & 1 << i) != 0) {
+                    return true;
+                }
+                break;
+            }
+        }
+
+        return toolType.equals(table.harvestTools[id]);
+    }
+
+    /**
+     * Get the tool that is most effective against the given block state, the harvest tool of the block state is used if it has one.
+     * @param blockState A block state
+     * @return The effective tool, or null if no tool is effective against the block state
+     */
+    public static ToolType getEffectiveTool(BlockState blockState) {
+        Table table = getTable();
+        int id = Block.getStateId(blockState);
+        if (id < 0 || id >= table.effectiveTools.length) {
+            return computeEffectiveTool(blockState);
+        }
+
+        return table.effectiveTools[id];
+    }
+
+    /**
+     * Get the tool that can harvest the given block state based on the materials and blocks that vanilla tools explicitly state they
+     * can harvest. Used as a fallback when a block state does not specify a harvest tool.
+     * @param blockState A block state
+     * @return The harvesting tool, or null if none of the tools explicitly state that they can harvest the block state
+     */
+    public static ToolType getHarvestingTool(BlockState blockState) {
+        Table table = getTable();
+        int id = Block.getStateId(blockState);
+        if (id < 0 || id >= table.harvestingTools.length) {
+            return computeHarvestingTool(blockState);
+        }
+
+        return table.harvestingTools[id];
+    }
+
+    private static Table getTable() {
+        Table current = table;
+        if (current == null || current.tagGeneration != BlockTags.getGeneration()) {
+            synchronized (ToolClassification.class) {
+                current = table;
+                if (current == null || current.tagGeneration != BlockTags.getGeneration()) {
+                    current = new Table();
+                    table = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static boolean computeToolEffective(ToolType toolType, BlockState blockState) {
+        if (axeHarvestMaterials.contains(blockState.getMaterial()) && ToolType.AXE.equals(toolType)) {
+            return true;
+        } else if (pickaxeHarvestMaterials.contains(blockState.getMaterial()) && ToolType.PICKAXE.equals(toolType)) {
+            return true;
+        } else if (cuttingHarvestBlocks.contains(blockState.getBlock()) && ToolTypes.cut.equals(toolType)) {
+            return true;
+        } else if (shovelHarvestBlocks.contains(blockState.getBlock()) && ToolType.SHOVEL.equals(toolType)) {
+            return true;
+        }
+
+        if (axeDestroyBlocks.contains(blockState.getBlock()) && ToolType.AXE.equals(toolType)) {
+            return true;
+        } else if (pickaxeDestroyBlocks.contains(blockState.getBlock()) && ToolType.PICKAXE.equals(toolType)) {
+            return true;
+        } else if (cuttingDestroyMaterials.contains(blockState.getMaterial())
+                || cuttingDestroyTags.stream().anyMatch(tag -> blockState.getBlock().isIn(tag)) && ToolTypes.cut.equals(toolType)) {
+            return true;
+        } else if (shovelDestroyBlocks.contains(blockState.getBlock()) && ToolType.SHOVEL.equals(toolType)) {
+            return true;
+        }
+
+        return false;
+    }
+
+    private static ToolType computeEffectiveTool(BlockState blockState) {
+        ToolType tool = blockState.getHarvestTool();
+
+        if (tool != null) {
+            return tool;
+        }
+
+        tool = computeHarvestingTool(blockState);
+        if (tool != null) {
+            return tool;
+        }
+
+        if (axeDestroyBlocks.contains(blockState.getBlock())) {
+            return ToolType.AXE;
+        } else if (pickaxeDestroyBlocks.contains(blockState.getBlock())) {
+            return ToolType.PICKAXE;
+        } else if (cuttingDestroyMaterials.contains(blockState.getMaterial())
+                || cuttingDestroyTags.stream().anyMatch(tag -> blockState.getBlock().isIn(tag))) {
+            return ToolTypes.cut;
+        } else if (shovelDestroyBlocks.contains(blockState.getBlock())) {
+            return ToolType.SHOVEL;
+        }
+        return null;
+    }
+
+    private static ToolType computeHarvestingTool(BlockState blockState) {
+        if (axeHarvestMaterials.contains(blockState.getMaterial())) {
+            return ToolType.AXE;
+        } else if (pickaxeHarvestMaterials.contains(blockState.getMaterial())) {
+            return ToolType.PICKAXE;
+        } else if (cuttingHarvestBlocks.contains(blockState.getBlock())) {
+            return ToolTypes.cut;
+        } else if (shovelHarvestBlocks.contains(blockState.getBlock())) {
+            return ToolType.SHOVEL;
+        }
+        return null;
+    }
+
+    private static class Table {
+        private final int tagGeneration;
+
+        private final byte[] flags;
+        private final ToolType[] harvestTools;
+        private final ToolType[] effectiveTools;
+        private final ToolType[] harvestingTools;
+
+        private Table() {
+            tagGeneration = BlockTags.getGeneration();
+
+            int size = Block.BLOCK_STATE_IDS.size();
+            flags = new byte[size];
+            harvestTools = new ToolType[size];
+            effectiveTools = new ToolType[size];
+            harvestingTools = new ToolType[size];
+
+            for (BlockState blockState : Block.BLOCK_STATE_IDS) {
+                int id = Block.getStateId(blockState);
+                if (id < 0 || id >= size) {
+                    continue;
+                }
+
+                byte stateFlags = 0;
+                for (int i = 0; i < knownTools.length; i++) {
+                    if (computeToolEffective(knownTools[i], blockState)) {
+                        stateFlags |= 1 << i;
+                    }
+                }
+                if (cuttingDestroyMaterials.contains(blockState.getMaterial())) {
+                    stateFlags |= anyToolFlag;
+                }
+
+                flags[id] = stateFlags;
+                harvestTools[id] = blockState.getHarvestTool();
+                effectiveTools[id] = computeEffectiveTool(blockState);
+                harvestingTools[id] = computeHarvestingTool(blockState);
+            }
+        }
+    }
+}
@@ -15,7 +15,6 @@ import se.mickelus.tetra.capabilities.Capability;
 import se.mickelus.tetra.capabilities.CapabilityHelper;
 
 import java.util.Comparator;
-import java.util.Map;
 
 public class ConfigActionImpl extends ConfigAction {
 
@@ -50,10 +49,9 @@ public class ConfigActionImpl extends ConfigAction {
         if (!player.world.isRemote) {
             ServerWorld world = (ServerWorld) player.world;
             LootTable table = world.getServer().getLootTableManager().getLootTableFromLocation(lootTable);
-            ItemStack toolStack = requiredCapabilities.valueMap.entrySet().stream()
-                    .sorted(Comparator.comparing(Map.Entry::getValue))
-                    .findFirst()
-                    .map(entry -> CapabilityHelper.getProvidingItemStack(entry.getKey(), entry.getValue(), player))
+            ItemStack toolStack = requiredCapabilities.getValues().stream()
+                    .min(Comparator.comparing(requiredCapabilities::getLevel))
+                    .map(capability -> CapabilityHelper.getProvidingItemStack(capability, requiredCapabilities.getLevel(capability), player))
                     .orElse(ItemStack.EMPTY);
 
             LootContext context = new LootContext.Builder(world)
@@ -1,5 +1,11 @@
 package se.mickelus.tetra.capabilities;
 
+import com.google.common.collect.ImmutableMap;
+import net.minecraftforge.common.ToolType;
+
+import java.util.Arrays;
+import java.util.Map;
+
 /**
  * Capabilities are provided by item modules and describe what an item can be used for. Capabilities have a level, and
  * most also makes use of an efficiency value. Several capabilities map to vanilla harvest tools, e.g. a module with the
@@ -56,5 +62,29 @@ public enum Capability {
     /**
      * Pry: Used for salvaging blocks.
      */
-    pry
+    pry;
+
+    private static final ToolType[] toolTypes = Arrays.stream(values())
+            .map(capability -> ToolType.get(capability.name()))
+            .toArray(ToolType[]::new);
+
+    private static final Map<ToolType, Capability> toolTypeLookup = Arrays.stream(values())
+            .collect(ImmutableMap.toImmutableMap(Capability::getToolType, capability -> capability));
+
+    /**
+     * @return the tool type that shares name with this capability
+     */
+    public ToolType getToolType() {
+        return toolTypes[ordinal()];
+    }
+
+    /**
+     * Get the capability that shares name with the given tool type, without the string conversion and exception handling involved
+     * in resolving it by name.
+     * @param toolType A tool type, may be null
+     * @return The matching capability, or null if no capability matches the tool type
+     */
+    public static Capability fromToolType(ToolType toolType) {
+        return toolType != null ? toolTypeLookup.get(toolType) : null;
+    }
 }
@@ -7,14 +7,11 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import se.mickelus.tetra.blocks.ITetraBlock;
-import se.mickelus.tetra.items.ItemModular;
 import se.mickelus.tetra.module.ItemEffect;
 import se.mickelus.tetra.module.ItemUpgradeRegistry;
 import se.mickelus.tetra.util.CastOptional;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class CapabilityHelper {
 
@@ -37,42 +34,22 @@ public class CapabilityHelper {
     }
 
     public static int getPlayerEffectLevel(PlayerEntity player, ItemEffect effect) {
-        return Stream.concat(player.inventory.offHandInventory.stream(), player.inventory.mainInventory.stream())
-                .filter(itemStack -> !itemStack.isEmpty())
-                .map(CapabilityHelper::getReplacement)
-                .filter(itemStack -> itemStack.getItem() instanceof ItemModular)
-                .map(itemStack -> ((ItemModular) itemStack.getItem()).getEffectLevel(itemStack, effect))
-                .max(Integer::compare)
-                .orElse(0);
+        return PlayerCapabilityTracker.instance.get(player).getEffectLevel(effect);
     }
 
+    /**
+     * Get the efficiency of the given effect from the item in the players inventory that has the highest level of the effect.
+     */
     public static double getPlayerEffectEfficiency(PlayerEntity player, ItemEffect effect) {
-        return Stream.concat(player.inventory.offHandInventory.stream(), player.inventory.mainInventory.stream())
-                .filter(itemStack -> !itemStack.isEmpty())
-                .map(CapabilityHelper::getReplacement)
-                .filter(itemStack -> itemStack.getItem() instanceof ItemModular)
-                .max(Comparator.comparingInt(itemStack -> ((ItemModular) itemStack.getItem()).getEffectLevel(itemStack, effect)))
-                .map(itemStack -> ((ItemModular) itemStack.getItem()).getEffectEfficiency(itemStack, effect))
-                .orElse(0d);
+        return PlayerCapabilityTracker.instance.get(player).getEffectEfficiency(effect);
     }
 
     public static int getPlayerCapabilityLevel(PlayerEntity player, Capability capability) {
-        return Stream.concat(player.inventory.offHandInventory.stream(), player.inventory.mainInventory.stream())
-                .filter(itemStack -> !itemStack.isEmpty())
-                .map(CapabilityHelper::getReplacement)
-                .filter(itemStack -> itemStack.getItem() instanceof ICapabilityProvider)
-                .map(itemStack -> ((ICapabilityProvider) itemStack.getItem()).getCapabilityLevel(itemStack, capability))
-                .max(Integer::compare)
-                .orElse(0);
+        return PlayerCapabilityTracker.instance.get(player).getCapabilityLevel(capability);
     }
 
     public static Collection<Capability> getPlayerCapabilities(PlayerEntity player) {
-        return Stream.concat(player.inventory.offHandInventory.stream(), player.inventory.mainInventory.stream())
-                .filter(itemStack -> !itemStack.isEmpty())
-                .map(CapabilityHelper::getReplacement)
-                .filter(itemStack -> itemStack.getItem() instanceof ICapabilityProvider)
-                .flatMap(itemStack -> ((ICapabilityProvider) itemStack.getItem()).getCapabilities(itemStack).stream())
-                .collect(Collectors.toSet());
+        return PlayerCapabilityTracker.instance.get(player).getCapabilities();
     }
 
     private static ItemStack getReplacement(ItemStack itemStack) {
@@ -104,20 +81,16 @@ public class CapabilityHelper {
     }
 
     public static int[] getCombinedCapabilityLevels(PlayerEntity player, World world, BlockPos pos, BlockState blockStateIn) {
+        PlayerCapabilityCache playerCapabilities = PlayerCapabilityTracker.instance.get(player);
         return Arrays.stream(Capability.values())
-                .mapToInt(capability -> getCombinedCapabilityLevel(player, world, pos, blockStateIn, capability))
+                .mapToInt(capability -> Math.max(playerCapabilities.getCapabilityLevel(capability),
+                        getBlockCapabilityLevel(world, pos, blockStateIn, capability)))
                 .toArray();
     }
 
     public static ItemStack getProvidingItemStack(Capability capability, int level, Entity entity) {
         return CastOptional.cast(entity, PlayerEntity.class)
-                .map(player -> Stream.concat(Stream.of(player.getHeldItemMainhand(), player.getHeldItemOffhand()), player.inventory.mainInventory.stream()))
-                .orElse(Stream.empty())
-                .filter(itemStack -> !itemStack.isEmpty())
-                .map(CapabilityHelper::getReplacement)
-                .filter(itemStack -> itemStack.getItem() instanceof ICapabilityProvider)
-                .filter(itemStack -> ((ICapabilityProvider) itemStack.getItem()).getCapabilityLevel(itemStack, capability) >= level)
-                .findAny()
+                .map(player -> PlayerCapabilityTracker.instance.get(player).getProvidingItemStack(player, capability, level))
                 .orElse(ItemStack.EMPTY);
     }
 }
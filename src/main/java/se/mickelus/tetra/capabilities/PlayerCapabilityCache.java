@@ -0,0 +1,317 @@
+package se.mickelus.tetra.capabilities;
+
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.inventory.container.Container;
+import net.minecraft.inventory.container.IContainerListener;
+import net.minecraft.inventory.container.Slot;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.util.NonNullList;
+import se.mickelus.tetra.items.ItemModular;
+import se.mickelus.tetra.module.ItemEffect;
+import se.mickelus.tetra.module.ItemUpgradeRegistry;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The capabilities and effects provided by the inventory of a player. Replacements and stats are resolved per inventory slot, slots are
+ * marked as dirty when their contents change and only dirty slots are resolved again. The max levels and efficiencies are aggregated
+ * from the per slot values when any slot has changed, queries read the aggregated values as is.
+ *
+ * On the server slots are marked as dirty by listening to the containers of the player, which compare the contents of each slot every
+ * tick. See {@link PlayerCapabilityTracker} for how slots are kept up to date otherwise.
+ */
+class PlayerCapabilityCache implements IContainerListener {
+
+    private static final Capability[] capabilities = Capability.values();
+    private static final ItemEffect[] effects = ItemEffect.values();
+
+    /**
+     * Slot order matches the order in which the inventory was previously streamed: offhand first, followed by the main inventory.
+     */
+    private SlotEntry[] slots = new SlotEntry[0];
+    private int offhandSize = 0;
+    private int mainSize = 0;
+    private int armorSize = 0;
+
+    private boolean dirty = true;
+    private int generation = -1;
+
+    // the inventory container of the player that this is listening to, players get a new container when they respawn
+    private Container inventoryContainer;
+
+    private final int[] capabilityLevels = new int[capabilities.length];
+    private Set<Capability> capabilitySet = Collections.emptySet();
+
+    private final int[] effectLevels = new int[effects.length];
+    private final float[] effectEfficiencies = new float[effects.length];
+
+    /**
+     * Resolves dirty slots and aggregates values again if anything has changed.
+     * @param generation the current data generation, all slots are resolved again if it differs from that of the last update
+     */
+    synchronized void update(PlayerEntity player, int generation) {
+        if (this.generation != generation) {
+            this.generation = generation;
+            markDirty();
+        }
+
+        if (!dirty) {
+            return;
+        }
+
+        NonNullList<ItemStack> offhand = player.inventory.offHandInventory;
+        NonNullList<ItemStack> main = player.inventory.mainInventory;
+
+        if (slots.length != offhand.size() + main.size()) {
+            slots = new SlotEntry[offhand.size() + main.size()];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = new SlotEntry();
+            }
+        }
+        offhandSize = offhand.size();
+        mainSize = main.size();
+        armorSize = player.inventory.armorInventory.size();
+
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i].dirty) {
+                slots[i].resolve(getStack(player, i));
+            }
+        }
+
+        aggregate();
+        dirty = false;
+    }
+
+    /**
+     * Starts listening to the given inventory container of the player, unless already listening to it.
+     */
+    synchronized void listen(Container container) {
+        if (inventoryContainer != container) {
+            inventoryContainer = container;
+            container.addListener(this);
+        }
+    }
+
+    /**
+     * Compares each slot against the stack it was resolved from, slots that hold a different stack or where the item, count, damage or
+     * tag of the stack has been replaced are marked as dirty. Tag contents are not compared.
+     */
+    synchronized void checkSlots(PlayerEntity player) {
+        if (slots.length != player.inventory.offHandInventory.size() + player.inventory.mainInventory.size()) {
+            markDirty();
+            return;
+        }
+
+        for (int i = 0; i < slots.length; i++) {
+            if (!slots[i].dirty && !slots[i].matches(getStack(player, i))) {
+                slots[i].dirty = true;
+                dirty = true;
+            }
+        }
+    }
+
+    private synchronized void markDirty() {
+        for (SlotEntry slot : slots) {
+            slot.dirty = true;
+        }
+        dirty = true;
+    }
+
+    private synchronized void markDirty(int inventoryIndex) {
+        if (inventoryIndex >= mainSize && inventoryIndex < mainSize + armorSize) {
+            // armor does not provide capabilities or effects
+            return;
+        }
+
+        int index = inventoryIndex < mainSize ? offhandSize + inventoryIndex : inventoryIndex - mainSize - armorSize;
+        if (index < slots.length) {
+            slots[index].dirty = true;
+            dirty = true;
+        } else {
+            // the layout of the inventory is not known yet
+            markDirty();
+        }
+    }
+
+    private ItemStack getStack(PlayerEntity player, int index) {
+        NonNullList<ItemStack> offhand = player.inventory.offHandInventory;
+        return index < offhand.size() ? offhand.get(index) : player.inventory.mainInventory.get(index - offhand.size());
+    }
+
+    private void aggregate() {
+        Set<Capability> capabilitySet = EnumSet.noneOf(Capability.class);
+        for (int i = 0; i < capabilities.length; i++) {
+            int level = 0;
+            for (SlotEntry slot : slots) {
+                if (slot.capabilityLevels != null) {
+                    level = Math.max(level, slot.capabilityLevels[i]);
+                    if (slot.capabilities.contains(capabilities[i])) {
+                        capabilitySet.add(capabilities[i]);
+                    }
+                }
+            }
+
+            capabilityLevels[i] = level;
+        }
+        this.capabilitySet = Collections.unmodifiableSet(capabilitySet);
+
+        for (int i = 0; i < effects.length; i++) {
+            int level = 0;
+            float efficiency = 0;
+            boolean found = false;
+            for (SlotEntry slot : slots) {
+                // efficiency is taken from the first stack that provides the highest level
+                if (slot.effectLevels != null && (!found || slot.effectLevels[i] > level)) {
+                    level = slot.effectLevels[i];
+                    efficiency = slot.effectEfficiencies[i];
+                    found = true;
+                }
+            }
+
+            effectLevels[i] = level;
+            effectEfficiencies[i] = efficiency;
+        }
+    }
+
+    int getCapabilityLevel(Capability capability) {
+        return capabilityLevels[capability.ordinal()];
+    }
+
+    Set<Capability> getCapabilities() {
+        return capabilitySet;
+    }
+
+    int getEffectLevel(ItemEffect effect) {
+        return effectLevels[effect.ordinal()];
+    }
+
+    float getEffectEfficiency(ItemEffect effect) {
+        return effectEfficiencies[effect.ordinal()];
+    }
+
+    /**
+     * Find a stack in the inventory of the given player that provides the given capability at the given level or higher. Held items are
+     * checked first, followed by the main inventory. Replacement stacks are copied as callers may modify them.
+     * @return the providing stack, or an empty stack if no stack provides the capability at the given level
+     */
+    synchronized ItemStack getProvidingItemStack(PlayerEntity player, Capability capability, int level) {
+        if (capabilityLevels[capability.ordinal()] < level) {
+            return ItemStack.EMPTY;
+        }
+
+        int mainhandIndex = PlayerInventory.isHotbar(player.inventory.currentItem) ? offhandSize + player.inventory.currentItem : -1;
+
+        if (mainhandIndex != -1 && mainhandIndex < slots.length && slots[mainhandIndex].provides(capability, level)) {
+            return slots[mainhandIndex].getProvidingStack(getStack(player, mainhandIndex));
+        }
+
+        for (int i = 0; i < slots.length; i++) {
+            if (i != mainhandIndex && slots[i].provides(capability, level)) {
+                return slots[i].getProvidingStack(getStack(player, i));
+            }
+        }
+
+        return ItemStack.EMPTY;
+    }
+
+    @Override
+    public void sendAllContents(Container container, NonNullList<ItemStack> itemsList) {
+        markDirty();
+    }
+
+    @Override
+    public void sendSlotContents(Container container, int slotIndex, ItemStack itemStack) {
+        Slot slot = container.getSlot(slotIndex);
+        if (slot.inventory instanceof PlayerInventory) {
+            markDirty(slot.getSlotIndex());
+        }
+    }
+
+    @Override
+    public void sendWindowProperty(Container container, int varToUpdate, int newValue) { }
+
+    private static class SlotEntry {
+        private boolean dirty = true;
+
+        private ItemStack itemStack;
+        private Item item;
+        private int count;
+        private int damage;
+        private CompoundNBT tag;
+
+        private ItemStack replacementStack = ItemStack.EMPTY;
+
+        private int[] capabilityLevels;
+        private Set<Capability> capabilities;
+
+        private int[] effectLevels;
+        private float[] effectEfficiencies;
+
+        private boolean provides(Capability capability, int level) {
+            return capabilityLevels != null && capabilityLevels[capability.ordinal()] >= level;
+        }
+
+        /**
+         * @param currentStack the stack currently in the slot, which is what callers should modify unless the item has a replacement
+         */
+        private ItemStack getProvidingStack(ItemStack currentStack) {
+            return replacementStack.isEmpty() ? currentStack : replacementStack.copy();
+        }
+
+        private boolean matches(ItemStack itemStack) {
+            return this.itemStack == itemStack
+                    && item == itemStack.getItem()
+                    && count == itemStack.getCount()
+                    && damage == itemStack.getDamage()
+                    && tag == itemStack.getTag();
+        }
+
+        private void resolve(ItemStack itemStack) {
+            dirty = false;
+
+            this.itemStack = itemStack;
+            item = itemStack.getItem();
+            count = itemStack.getCount();
+            damage = itemStack.getDamage();
+            tag = itemStack.getTag();
+
+            replacementStack = ItemStack.EMPTY;
+            capabilityLevels = null;
+            capabilities = null;
+            effectLevels = null;
+            effectEfficiencies = null;
+
+            if (itemStack.isEmpty()) {
+                return;
+            }
+
+            replacementStack = ItemUpgradeRegistry.instance.getReplacement(itemStack);
+            ItemStack resolvedStack = replacementStack.isEmpty() ? itemStack : replacementStack;
+
+            if (resolvedStack.getItem() instanceof ICapabilityProvider) {
+                ICapabilityProvider provider = (ICapabilityProvider) resolvedStack.getItem();
+                capabilityLevels = new int[PlayerCapabilityCache.capabilities.length];
+                for (int i = 0; i < PlayerCapabilityCache.capabilities.length; i++) {
+                    capabilityLevels[i] = provider.getCapabilityLevel(resolvedStack, PlayerCapabilityCache.capabilities[i]);
+                }
+                capabilities = EnumSet.noneOf(Capability.class);
+                capabilities.addAll(provider.getCapabilities(resolvedStack));
+            }
+
+            if (resolvedStack.getItem() instanceof ItemModular) {
+                ItemModular item = (ItemModular) resolvedStack.getItem();
+                effectLevels = new int[effects.length];
+                effectEfficiencies = new float[effects.length];
+                for (int i = 0; i < effects.length; i++) {
+                    effectLevels[i] = item.getEffectLevel(resolvedStack, effects[i]);
+                    effectEfficiencies[i] = (float) item.getEffectEfficiency(resolvedStack, effects[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package se.mickelus.tetra.capabilities;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraftforge.common.util.FakePlayer;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.player.PlayerContainerEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import se.mickelus.tetra.data.DataManager;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Keeps the capabilities and effects provided by the inventories of players up to date. On the server the containers of each player are
+ * listened to for changed slots, the inventory container is listened to from the first time the aggregate of a player is requested.
+ * Containers do not necessarily hold every slot of the player inventory (e.g. the offhand) and inventories are updated by replacing
+ * stacks on the client, so each slot is also compared against the stack it was resolved from once per tick. Fake players do not tick,
+ * their slots are compared whenever their aggregate is requested.
+ *
+ * Everything is resolved again when data that capabilities and effects are derived from is reloaded.
+ */
+public class PlayerCapabilityTracker {
+
+    public static PlayerCapabilityTracker instance;
+
+    private final Cache<PlayerEntity, PlayerCapabilityCache> cache = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    // bumped when data is reloaded, caches resolve all slots again when they see a new generation
+    private volatile int generation = 0;
+
+    public PlayerCapabilityTracker() {
+        instance = this;
+
+        DataManager.moduleData.onReload(this::invalidate);
+        DataManager.tweakData.onReload(this::invalidate);
+        DataManager.improvementData.onReload(this::invalidate);
+        DataManager.synergyData.onReload(this::invalidate);
+        DataManager.replacementData.onReload(this::invalidate);
+    }
+
+    private void invalidate() {
+        generation++;
+    }
+
+    /**
+     * Get the up to date aggregate for the given player.
+     */
+    PlayerCapabilityCache get(PlayerEntity player) {
+        PlayerCapabilityCache aggregate = getAggregate(player);
+        if (player instanceof ServerPlayerEntity) {
+            aggregate.listen(player.container);
+
+            if (player instanceof FakePlayer) {
+                aggregate.checkSlots(player);
+            }
+        }
+        aggregate.update(player, generation);
+        return aggregate;
+    }
+
+    private PlayerCapabilityCache getAggregate(PlayerEntity player) {
+        try {
+            return cache.get(player, PlayerCapabilityCache::new);
+        } catch (ExecutionException e) {
+            return new PlayerCapabilityCache();
+        }
+    }
+
+    @SubscribeEvent
+    public void onContainerOpen(PlayerContainerEvent.Open event) {
+        if (event.getPlayer() instanceof ServerPlayerEntity) {
+            event.getContainer().addListener(getAggregate(event.getPlayer()));
+        }
+    }
+
+    @SubscribeEvent
+    public void onPlayerTick(TickEvent.PlayerTickEvent event) {
+        if (event.phase == TickEvent.Phase.END) {
+            PlayerCapabilityCache aggregate = cache.getIfPresent(event.player);
+            if (aggregate != null) {
+                aggregate.checkSlots(event.player);
+            }
+        }
+    }
+}
@@ -18,9 +18,12 @@ import net.minecraftforge.client.model.pipeline.UnpackedBakedQuad;
 import net.minecraftforge.common.model.TRSRTransformation;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import se.mickelus.tetra.module.data.ModuleModel;
@@ -32,8 +35,21 @@ import se.mickelus.tetra.module.data.ModuleModel;
  *   special-case logic like vanilla does.
  * - Various fixes in the baking logic.
  * - Not limited to 4 layers maximum.
+ * - Side quads are only generated along the edges of opaque pixels.
+ * - Quads are cached per layer and shared by all models that contain the same layer.
  */
 public final class ModularItemModel implements IUnbakedModel {
+
+    // edges of opaque pixels per sprite, sprites are replaced when resources are reloaded
+    private static final Cache<TextureAtlasSprite, int[]> edgeCache = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    // baked quads per layer, most layers show up in a lot of different module combinations
+    private static final Cache<LayerKey, List<BakedQuad>> layerCache = CacheBuilder.newBuilder()
+            .maximumSize(4096)
+            .build();
+
     private final List<ModuleModel> models;
 
     public ModularItemModel(List<ModuleModel> models) {
@@ -82,38 +98,133 @@ public final class ModularItemModel implements IUnbakedModel {
     @Nullable
     @Override
     public IBakedModel bake(ModelBakery bakery, Function<ResourceLocation, TextureAtlasSprite> spriteGetter, ISprite sprite, VertexFormat format) {
-        ImmutableList.Builder<BakedQuad> builder = ImmutableList.builder();
-
-        Optional<TRSRTransformation> transform = sprite.getState().apply(Optional.empty());
-        ImmutableMap<TransformType, TRSRTransformation> map = PerspectiveMapWrapper.getTransforms(sprite.getState());
-        boolean identity = !transform.isPresent() || transform.get().isIdentity();
+        return resolve(spriteGetter).bake(sprite, format);
+    }
 
-        for(int i = 0; i < models.size(); i++) {
-            ModuleModel model = models.get(i);
-            TextureAtlasSprite tas = spriteGetter.apply(model.location);
-            builder.addAll(getQuadsForSprite(i, tas, format, transform, model.tint));
+    /**
+     * Resolves the sprites of all layers and the edges of their opaque pixels from the texture atlas. The atlas is reloaded on the render
+     * thread, so this has to be called on the render thread when the model is baked elsewhere.
+     * @param spriteGetter gets sprites from the texture atlas
+     * @return immutable layers that can be baked on any thread
+     */
+    public Resolved resolve(Function<ResourceLocation, TextureAtlasSprite> spriteGetter) {
+        ImmutableList.Builder<Layer> layers = ImmutableList.builder();
+        for (ModuleModel model : models) {
+            TextureAtlasSprite sprite = spriteGetter.apply(model.location);
+            layers.add(new Layer(sprite, getEdges(sprite), model.tint));
         }
+
         TextureAtlasSprite particle = spriteGetter.apply(models.isEmpty() ? new ResourceLocation("missingno") : models.get(0).location);
 
-        return new BakedItemModel(builder.build(), particle, map, ItemOverrideList.EMPTY, identity);
+        return new Resolved(layers.build(), particle);
     }
 
-    public static List<BakedQuad> getQuadsForSprite(int tintIndex, TextureAtlasSprite sprite, VertexFormat format,
-            Optional<TRSRTransformation> transform, int color) {
-        ImmutableList.Builder<BakedQuad> builder = ImmutableList.builder();
+    /**
+     * Clears cached quads and edges, should be called when the texture atlas has been reloaded.
+     */
+    public static void clearCaches() {
+        layerCache.invalidateAll();
+        edgeCache.invalidateAll();
+    }
 
+    private static List<BakedQuad> getLayerQuads(int tintIndex, Layer layer, VertexFormat format, Optional<TRSRTransformation> transform) {
+        try {
+            return layerCache.get(new LayerKey(layer.sprite, tintIndex, layer.color, transform, format),
+                    () -> getQuadsForSprite(tintIndex, layer.sprite, layer.edges, format, transform, layer.color));
+        } catch (ExecutionException e) {
+            return getQuadsForSprite(tintIndex, layer.sprite, layer.edges, format, transform, layer.color);
+        }
+    }
+
+    private static int[] getEdges(TextureAtlasSprite sprite) {
+        try {
+            return edgeCache.get(sprite, () -> computeEdges(sprite));
+        } catch (ExecutionException e) {
+            return computeEdges(sprite);
+        }
+    }
+
+    /**
+     * Finds the edges between opaque and transparent pixels in the given sprite, side quads are only needed along these edges. Edges along
+     * the same row or column are merged into a single run. Rows are counted from the bottom of the sprite, i.e. in the same direction as
+     * the y axis of the model. A pixel is considered opaque if it's opaque in any frame of the sprite.
+     * @return runs of edges, packed as groups of four ints: side index, u, v, length
+     */
+    private static int[] computeEdges(TextureAtlasSprite sprite) {
         int uMax = sprite.getWidth();
         int vMax = sprite.getHeight();
 
-        // todo: figure out why this doesn't work when considering fully transparent rows
+        boolean[] opaque = new boolean[uMax * vMax];
+        for (int f = 0; f < sprite.getFrameCount(); f++) {
+            for (int v = 0; v < vMax; v++) {
+                for (int u = 0; u < uMax; u++) {
+                    if ((sprite.getPixelRGBA(f, u, vMax - v - 1) >> 24 & 0xFF) / 255f > 0.1f) {
+                        opaque[v * uMax + u] = true;
+                    }
+                }
+            }
+        }
+
+        List<Integer> edges = new ArrayList<>();
         for (int v = 0; v < vMax; v++) {
-            builder.add(buildSideQuad(format, transform, Direction.UP, tintIndex, color, sprite, 0, v, uMax));
-            builder.add(buildSideQuad(format, transform, Direction.DOWN, tintIndex, color, sprite, 0, v + 1, uMax));
+            int upStart = -1;
+            int downStart = -1;
+            for (int u = 0; u <= uMax; u++) {
+                boolean isOpaque = u < uMax && opaque[v * uMax + u];
+                boolean up = isOpaque && (v == 0 || !opaque[(v - 1) * uMax + u]);
+                boolean down = isOpaque && (v == vMax - 1 || !opaque[(v + 1) * uMax + u]);
+
+                upStart = addRun(edges, Direction.UP, up, upStart, u, v, true);
+                downStart = addRun(edges, Direction.DOWN, down, downStart, u, v + 1, true);
+            }
         }
 
         for (int u = 0; u < uMax; u++) {
-            builder.add(buildSideQuad(format, transform, Direction.EAST, tintIndex, color, sprite, u + 1, 0, vMax));
-            builder.add(buildSideQuad(format, transform, Direction.WEST, tintIndex, color, sprite, u, 0, vMax));
+            int westStart = -1;
+            int eastStart = -1;
+            for (int v = 0; v <= vMax; v++) {
+                boolean isOpaque = v < vMax && opaque[v * uMax + u];
+                boolean west = isOpaque && (u == 0 || !opaque[v * uMax + u - 1]);
+                boolean east = isOpaque && (u == uMax - 1 || !opaque[v * uMax + u + 1]);
+
+                westStart = addRun(edges, Direction.WEST, west, westStart, u, v, false);
+                eastStart = addRun(edges, Direction.EAST, east, eastStart, u + 1, v, false);
+            }
+        }
+
+        return edges.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Tracks a run of edges along a row or column, a run is added when it ends.
+     * @return the start of the current run, or -1 if there is no run in progress
+     */
+    private static int addRun(List<Integer> edges, Direction side, boolean isEdge, int start, int u, int v, boolean horizontal) {
+        int position = horizontal ? u : v;
+        if (isEdge) {
+            return start == -1 ? position : start;
+        }
+
+        if (start != -1) {
+            edges.add(side.getIndex());
+            edges.add(horizontal ? start : u);
+            edges.add(horizontal ? v : start);
+            edges.add(position - start);
+        }
+        return -1;
+    }
+
+    /**
+     * Builds the quads for a single layer. Only reads the coordinates of the sprite, pixel data is read when edges are computed.
+     * @param edges runs of edges of the opaque pixels of the sprite, see {@link #computeEdges(TextureAtlasSprite)}
+     */
+    public static List<BakedQuad> getQuadsForSprite(int tintIndex, TextureAtlasSprite sprite, int[] edges, VertexFormat format,
+            Optional<TRSRTransformation> transform, int color) {
+        ImmutableList.Builder<BakedQuad> builder = ImmutableList.builder();
+
+        for (int i = 0; i < edges.length; i += 4) {
+            builder.add(buildSideQuad(format, transform, Direction.byIndex(edges[i]), tintIndex, color, sprite,
+                    edges[i + 1], edges[i + 2], edges[i + 3]));
         }
 
         // front
@@ -256,4 +367,85 @@ public final class ModularItemModel implements IUnbakedModel {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * The layers of a model resolved from the texture atlas, see {@link #resolve(Function)}.
+     */
+    public static final class Resolved {
+        private final ImmutableList<Layer> layers;
+        private final TextureAtlasSprite particle;
+
+        private Resolved(ImmutableList<Layer> layers, TextureAtlasSprite particle) {
+            this.layers = layers;
+            this.particle = particle;
+        }
+
+        /**
+         * Bakes the resolved layers into a model, safe to call from any thread.
+         */
+        public IBakedModel bake(ISprite sprite, VertexFormat format) {
+            ImmutableList.Builder<BakedQuad> builder = ImmutableList.builder();
+
+            Optional<TRSRTransformation> transform = sprite.getState().apply(Optional.empty());
+            ImmutableMap<TransformType, TRSRTransformation> map = PerspectiveMapWrapper.getTransforms(sprite.getState());
+            boolean identity = !transform.isPresent() || transform.get().isIdentity();
+
+            for (int i = 0; i < layers.size(); i++) {
+                builder.addAll(getLayerQuads(i, layers.get(i), format, transform));
+            }
+
+            return new BakedItemModel(builder.build(), particle, map, ItemOverrideList.EMPTY, identity);
+        }
+    }
+
+    private static class Layer {
+        private final TextureAtlasSprite sprite;
+        // shared with the edge cache, never modified
+        private final int[] edges;
+        private final int color;
+
+        Layer(TextureAtlasSprite sprite, int[] edges, int color) {
+            this.sprite = sprite;
+            this.edges = edges;
+            this.color = color;
+        }
+    }
+
+    private static class LayerKey {
+        // sprites are compared by identity, sprites from a previous atlas never match sprites from the current one
+        private final TextureAtlasSprite sprite;
+        private final int tintIndex;
+        private final int color;
+        private final Optional<TRSRTransformation> transform;
+        private final VertexFormat format;
+
+        private final int hash;
+
+        LayerKey(TextureAtlasSprite sprite, int tintIndex, int color, Optional<TRSRTransformation> transform, VertexFormat format) {
+            this.sprite = sprite;
+            this.tintIndex = tintIndex;
+            this.color = color;
+            this.transform = transform;
+            this.format = format;
+
+            hash = Objects.hash(System.identityHashCode(sprite), tintIndex, color, transform, format);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            LayerKey layerKey = (LayerKey) o;
+            return sprite == layerKey.sprite
+                    && tintIndex == layerKey.tintIndex
+                    && color == layerKey.color
+                    && transform.equals(layerKey.transform)
+                    && format.equals(layerKey.format);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
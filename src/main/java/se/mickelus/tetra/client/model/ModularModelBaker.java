@@ -0,0 +1,114 @@
+package se.mickelus.tetra.client.model;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.model.IBakedModel;
+import net.minecraftforge.client.event.RenderGameOverlayEvent;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bakes modular item models on a pool of worker threads, so that the render thread does not stall when many previously unseen module
+ * combinations show up at once (e.g. when opening a chest full of loot). Anything read from the texture atlas has to be resolved before
+ * a bake is submitted, as the atlas is reloaded on the render thread. Finished models are handed back to the render thread and applied at
+ * the start of each frame.
+ */
+public class ModularModelBaker {
+    private static final Logger logger = LogManager.getLogger();
+
+    public static ModularModelBaker instance;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2)),
+            new ThreadFactoryBuilder()
+                    .setNameFormat("Tetra model baker %d")
+                    .setDaemon(true)
+                    .build());
+
+    private final Queue<Runnable> completions = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong bakeCount = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private volatile long maxLatency = 0;
+
+    public ModularModelBaker() {
+        instance = this;
+    }
+
+    /**
+     * Bake a model on a worker thread, the callback is called on the render thread once the model has been baked.
+     * @param bake bakes the model, called on a worker thread
+     * @param onBaked called on the render thread with the baked model, or null if baking failed
+     */
+    public void submit(Callable<IBakedModel> bake, Consumer<IBakedModel> onBaked) {
+        long submitted = System.nanoTime();
+        queueDepth.incrementAndGet();
+
+        executor.execute(() -> {
+            IBakedModel model = null;
+            try {
+                model = bake.call();
+            } catch (Exception e) {
+                logger.warn("Failed to bake modular item model", e);
+            }
+
+            long latency = System.nanoTime() - submitted;
+            bakeCount.incrementAndGet();
+            totalLatency.addAndGet(latency);
+            maxLatency = Math.max(maxLatency, latency);
+            queueDepth.decrementAndGet();
+
+            IBakedModel result = model;
+            completions.add(() -> onBaked.accept(result));
+        });
+    }
+
+    /**
+     * @return the number of models that are queued or currently being baked
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return the average time from submission until a model has been baked, in milliseconds
+     */
+    public double getAverageLatency() {
+        long count = bakeCount.get();
+        return count > 0 ? totalLatency.get() / (count * 1e6) : 0;
+    }
+
+    /**
+     * @return the longest time from submission until a model has been baked, in milliseconds
+     */
+    public double getMaxLatency() {
+        return maxLatency / 1e6;
+    }
+
+    @SubscribeEvent
+    public void onRenderTick(TickEvent.RenderTickEvent event) {
+        if (event.phase == TickEvent.Phase.START) {
+            Runnable completion;
+            while ((completion = completions.poll()) != null) {
+                completion.run();
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public void onDebugOverlay(RenderGameOverlayEvent.Text event) {
+        if (Minecraft.getInstance().gameSettings.showDebugInfo && bakeCount.get() > 0) {
+            event.getRight().add(String.format("Tetra models: %d queued, %.1f ms avg, %.1f ms max", getQueueDepth(), getAverageLatency(),
+                    getMaxLatency()));
+        }
+    }
+}
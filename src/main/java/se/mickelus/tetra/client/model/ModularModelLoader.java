@@ -38,7 +38,8 @@ public class ModularModelLoader {
 
     private static List<ModularOverrideList> overrides = new ArrayList<>();
     static {
-        // improvement data is the last data store that contains model information
+        // stores are only reloaded when something has changed, so listen to all stores that contain model information
+        DataManager.moduleData.onReload(ModularModelLoader::clearCaches);
         DataManager.improvementData.onReload(ModularModelLoader::clearCaches);
     }
 
@@ -49,6 +50,9 @@ public class ModularModelLoader {
     public static void loadModels(ModelBakeEvent event) {
         overrides.clear();
 
+        // sprites are replaced when the texture atlas is reloaded
+        ModularItemModel.clearCaches();
+
         //        TextureAtlasSprite particleSprite = ModelLoader.defaultTextureGetter().apply(new ResourceLocation(unbaked.resolveTextureName("particle")));
         items.forEach(item -> {
             ModelResourceLocation resourceLocation = new ModelResourceLocation(item.getRegistryName(), "inventory");
@@ -35,10 +35,10 @@ import se.mickelus.tetra.module.data.ModuleModel;
 
 import javax.annotation.Nullable;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.ExecutionException;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -51,6 +51,15 @@ public class ModularOverrideList extends ItemOverrideList {
             .build();
 
 
+    // the last model rendered for each stack, shown while the model for a changed stack is being baked
+    private Cache<ItemStack, IBakedModel> lastModels = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    // only accessed from the render thread
+    private final Set<CacheKey> pendingKeys = new HashSet<>();
+    private int generation = 0;
+
     private final ModelBakery bakery;
     private final BlockModel unbaked;
 
@@ -63,51 +72,69 @@ public class ModularOverrideList extends ItemOverrideList {
 
     public void clearCache() {
         bakedModelCache.invalidateAll();
+        pendingKeys.clear();
+        generation++;
     }
 
+    /**
+     * Models are baked asynchronously by the {@link ModularModelBaker}, until the model for a stack has been baked the last model used for
+     * that stack is returned, or the original model if the stack has not been rendered before.
+     */
     @Nullable
     @Override
     public IBakedModel getModelWithOverrides(IBakedModel originalModel, ItemStack stack, @Nullable World world, @Nullable LivingEntity entity) {
         CompoundNBT baseTag = NBTHelper.getTag(stack);
-        IBakedModel result = originalModel;
         if(!baseTag.isEmpty()) {
             CacheKey key = getCacheKey(stack, originalModel);
 
-            try {
-                result = bakedModelCache.get(key, () -> getOverrideModel(stack));
-            } catch(ExecutionException e) {
-                // do nothing, return original model
-                e.printStackTrace();
+            IBakedModel model = bakedModelCache.getIfPresent(key);
+            if (model != null) {
+                if (lastModels.getIfPresent(stack) != model) {
+                    lastModels.put(stack, model);
+                }
+                return model;
+            }
+
+            requestBake(key, stack);
+
+            IBakedModel lastModel = lastModels.getIfPresent(stack);
+            if (lastModel != null) {
+                return lastModel;
             }
         }
-        return result;
+        return originalModel;
+    }
+
+    private void requestBake(CacheKey key, ItemStack itemStack) {
+        if (pendingKeys.add(key)) {
+            // models have to be resolved from the stack on the render thread, the stack may change while the model is baked. Sprites are
+            // resolved here as well as the texture atlas is reloaded on the render thread, the baker only gets immutable layers
+            List<ModuleModel> models = ((ItemModular) itemStack.getItem()).getModels(itemStack);
+            ModularItemModel.Resolved resolved = new ModularItemModel(models).resolve(ModelLoader.defaultTextureGetter());
+            SimpleModelState state = getModelState();
+            int bakeGeneration = generation;
+
+            ModularModelBaker.instance.submit(() -> resolved.bake(state, DefaultVertexFormats.ITEM), model -> {
+                // skip models that were baked before the cache was cleared, they may reference stale sprites
+                if (bakeGeneration == generation) {
+                    pendingKeys.remove(key);
+                    bakedModelCache.put(key, model != null ? model : key.parent);
+                }
+            });
+        }
     }
 
     protected CacheKey getCacheKey(ItemStack stack, IBakedModel original) {
         return new CacheKey(original, stack);
     }
 
-    protected IBakedModel getOverrideModel(ItemStack itemStack) {
-        ItemModular item  = (ItemModular) itemStack.getItem();
-
+    protected SimpleModelState getModelState() {
         // todo 1.14: look at ItemModelGenerator
         ItemCameraTransforms transforms = unbaked.getAllTransforms();
         Map<ItemCameraTransforms.TransformType, TRSRTransformation> tMap = Maps.newHashMap();
         tMap.putAll(PerspectiveMapWrapper.getTransforms(transforms));
         // tMap.putAll(PerspectiveMapWrapper.getTransforms(new BasicState(unbaked.getDefaultState(), false).getState()));
-        SimpleModelState perState = new SimpleModelState(ImmutableMap.copyOf(tMap));
-
-//        Map<String, String> textures = new HashMap<>();
-//        item.getTextures(itemStack).forEach(resourceLocation -> textures.put("", resourceLocation.toString()));
-//        unbaked.retexture(ImmutableMap.copyOf(textures));
-//
-//        return unbaked.bake(bakery, ModelLoader.defaultTextureGetter(), new BasicState(unbaked.getDefaultState(), false),
-//                DefaultVertexFormats.ITEM);
-
-        List<ModuleModel> models = item.getModels(itemStack);
-
-         return new ModularItemModel(models).bake(bakery, ModelLoader.defaultTextureGetter(),
-                 perState, DefaultVertexFormats.ITEM);
+        return new SimpleModelState(ImmutableMap.copyOf(tMap));
     }
 
     protected static class CacheKey {
@@ -121,7 +148,7 @@ public class ModularOverrideList extends ItemOverrideList {
         }
 
         protected String getDataFromStack(ItemStack stack) {
-            return NBTHelper.getTag(stack).toString();
+            return ((ItemModular) stack.getItem()).getModelKey(stack);
         }
 
         @Override
@@ -135,10 +162,8 @@ public class ModularOverrideList extends ItemOverrideList {
 
             CacheKey cacheKey = (CacheKey) o;
 
-            if(parent != null ? parent != cacheKey.parent : cacheKey.parent != null) {
-                return false;
-            }
-            return Objects.equals(data, cacheKey.data);
+            // model keys are interned, identical data is the same instance
+            return parent == cacheKey.parent && data == cacheKey.data;
 
         }
 
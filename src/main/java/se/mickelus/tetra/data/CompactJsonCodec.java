@@ -0,0 +1,195 @@
+package se.mickelus.tetra.data;
+
+import com.google.gson.*;
+import net.minecraft.util.ResourceLocation;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary encoding of data store contents, used when syncing data to clients. Elements are written as tagged values, all strings
+ * (object keys, string values and resource locations) are written once to a string table and then referenced by index. The result is
+ * deflated, data files repeat a lot of structure which compresses well.
+ *
+ * Layout: string count, strings, entry count, and then a location index and an element per entry. Counts and indices are written as
+ * varints.
+ */
+public class CompactJsonCodec {
+    private static final int tagNull = 0;
+    private static final int tagTrue = 1;
+    private static final int tagFalse = 2;
+    private static final int tagLong = 3;
+    private static final int tagDouble = 4;
+    private static final int tagString = 5;
+    private static final int tagArray = 6;
+    private static final int tagObject = 7;
+
+    public static byte[] encode(Map<ResourceLocation, JsonElement> data) throws IOException {
+        Map<String, Integer> stringTable = new LinkedHashMap<>();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream bodyStream = new DataOutputStream(body);
+        writeVarInt(bodyStream, data.size());
+        for (Map.Entry<ResourceLocation, JsonElement> entry : data.entrySet()) {
+            writeVarInt(bodyStream, getStringIndex(stringTable, entry.getKey().toString()));
+            writeElement(bodyStream, stringTable, entry.getValue());
+        }
+        bodyStream.flush();
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DataOutputStream outputStream = new DataOutputStream(new DeflaterOutputStream(result, deflater))) {
+            writeVarInt(outputStream, stringTable.size());
+            for (String string : stringTable.keySet()) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(outputStream, bytes.length);
+                outputStream.write(bytes);
+            }
+
+            body.writeTo(outputStream);
+        } finally {
+            deflater.end();
+        }
+
+        return result.toByteArray();
+    }
+
+    public static Map<ResourceLocation, JsonElement> decode(byte[] bytes) throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)))) {
+            String[] strings = new String[readVarInt(inputStream)];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] stringBytes = new byte[readVarInt(inputStream)];
+                inputStream.readFully(stringBytes);
+                strings[i] = new String(stringBytes, StandardCharsets.UTF_8);
+            }
+
+            int count = readVarInt(inputStream);
+            Map<ResourceLocation, JsonElement> result = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                ResourceLocation location = new ResourceLocation(strings[readVarInt(inputStream)]);
+                result.put(location, readElement(inputStream, strings));
+            }
+
+            return result;
+        }
+    }
+
+    private static int getStringIndex(Map<String, Integer> stringTable, String string) {
+        return stringTable.computeIfAbsent(string, s -> stringTable.size());
+    }
+
+    private static void writeElement(DataOutputStream outputStream, Map<String, Integer> stringTable, JsonElement element)
+            throws IOException {
+        if (element == null || element.isJsonNull()) {
+            outputStream.writeByte(tagNull);
+        } else if (element.isJsonPrimitive()) {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                outputStream.writeByte(primitive.getAsBoolean() ? tagTrue : tagFalse);
+            } else if (primitive.isNumber()) {
+                writeNumber(outputStream, primitive.getAsBigDecimal());
+            } else {
+                outputStream.writeByte(tagString);
+                writeVarInt(outputStream, getStringIndex(stringTable, primitive.getAsString()));
+            }
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            outputStream.writeByte(tagArray);
+            writeVarInt(outputStream, array.size());
+            for (JsonElement child : array) {
+                writeElement(outputStream, stringTable, child);
+            }
+        } else {
+            Set<Map.Entry<String, JsonElement>> entries = element.getAsJsonObject().entrySet();
+            outputStream.writeByte(tagObject);
+            writeVarInt(outputStream, entries.size());
+            for (Map.Entry<String, JsonElement> entry : entries) {
+                writeVarInt(outputStream, getStringIndex(stringTable, entry.getKey()));
+                writeElement(outputStream, stringTable, entry.getValue());
+            }
+        }
+    }
+
+    private static void writeNumber(DataOutputStream outputStream, BigDecimal number) throws IOException {
+        long value;
+        try {
+            value = number.longValueExact();
+        } catch (ArithmeticException e) {
+            outputStream.writeByte(tagDouble);
+            outputStream.writeDouble(number.doubleValue());
+            return;
+        }
+
+        outputStream.writeByte(tagLong);
+        writeVarLong(outputStream, (value << 1) ^ (value >> 63));
+    }
+
+    private static JsonElement readElement(DataInputStream inputStream, String[] strings) throws IOException {
+        int tag = inputStream.readUnsignedByte();
+        switch (tag) {
+            case tagNull:
+                return JsonNull.INSTANCE;
+            case tagTrue:
+                return new JsonPrimitive(true);
+            case tagFalse:
+                return new JsonPrimitive(false);
+            case tagLong:
+                long zigzag = readVarLong(inputStream);
+                return new JsonPrimitive((zigzag >>> 1) ^ -(zigzag & 1));
+            case tagDouble:
+                return new JsonPrimitive(inputStream.readDouble());
+            case tagString:
+                return new JsonPrimitive(strings[readVarInt(inputStream)]);
+            case tagArray:
+                int size = readVarInt(inputStream);
+                JsonArray array = new JsonArray();
+                for (int i = 0; i < size; i++) {
+                    array.add(readElement(inputStream, strings));
+                }
+                return array;
+            case tagObject:
+                int entryCount = readVarInt(inputStream);
+                JsonObject object = new JsonObject();
+                for (int i = 0; i < entryCount; i++) {
+                    String key = strings[readVarInt(inputStream)];
+                    object.add(key, readElement(inputStream, strings));
+                }
+                return object;
+            default:
+                throw new IOException("Unknown element tag " + tag);
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream outputStream, int value) throws IOException {
+        writeVarLong(outputStream, value & 0xFFFFFFFFL);
+    }
+
+    private static void writeVarLong(DataOutputStream outputStream, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            outputStream.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        outputStream.writeByte((int) value);
+    }
+
+    private static int readVarInt(DataInputStream inputStream) throws IOException {
+        return (int) readVarLong(inputStream);
+    }
+
+    private static long readVarLong(DataInputStream inputStream) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = inputStream.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Varint too long");
+    }
+}
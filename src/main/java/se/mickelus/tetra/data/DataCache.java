@@ -0,0 +1,121 @@
+package se.mickelus.tetra.data;
+
+import com.google.common.hash.Hashing;
+import net.minecraftforge.fml.loading.FMLPaths;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Client side disk cache for data synced from servers. Encoded data is stored by the hash of its content, so that data that has not
+ * changed since the last time the player connected to a server does not have to be sent again. A few versions of each data store are
+ * kept, which allows players to switch between servers running different data without refetching everything.
+ */
+public class DataCache {
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final String extension = ".bin";
+
+    // hashes are provided by the server, anything that isn't a sha-256 hex string is rejected before it's used to build a path
+    private static final Pattern hashPattern = Pattern.compile("^[0-9a-f]{64}$");
+    private static final Pattern directoryPattern = Pattern.compile("^[a-z0-9_]+$");
+
+    // how many versions to keep per data store
+    private static final int maxEntries = 8;
+
+    private static Path getCacheDirectory() {
+        return FMLPaths.GAMEDIR.get().resolve("tetra_cache");
+    }
+
+    public static String hash(byte[] data) {
+        return Hashing.sha256().hashBytes(data).toString();
+    }
+
+    /**
+     * Reads cached data for a data store.
+     * @param directory the directory of the data store
+     * @param hash the hash of the data, as provided by the server
+     * @return the cached data, or null if there is no data with a matching hash
+     */
+    @Nullable
+    public static byte[] read(String directory, String hash) {
+        if (!hashPattern.matcher(hash).matches() || !directoryPattern.matcher(directory).matches()) {
+            logger.warn("Ignoring invalid data hash for {}", directory);
+            return null;
+        }
+
+        Path cacheDirectory = getCacheDirectory().toAbsolutePath().normalize();
+        Path path = cacheDirectory.resolve(directory + "-" + hash + extension).normalize();
+        if (!cacheDirectory.equals(path.getParent()) || !Files.isRegularFile(path)) {
+            return null;
+        }
+
+        try {
+            byte[] data = Files.readAllBytes(path);
+            if (hash.equals(hash(data))) {
+                // used to determine what entries to evict
+                Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+                return data;
+            }
+
+            logger.warn("Discarding corrupt cached {} data", directory);
+            Files.delete(path);
+        } catch (IOException e) {
+            logger.warn("Failed to read cached {} data", directory, e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes data for a data store to the cache, old entries for the same data store are evicted if there are too many of them.
+     * @param directory the directory of the data store
+     * @param data encoded data
+     */
+    public static void write(String directory, byte[] data) {
+        Path cacheDirectory = getCacheDirectory();
+        try {
+            Files.createDirectories(cacheDirectory);
+            Files.write(cacheDirectory.resolve(directory + "-" + hash(data) + extension), data);
+
+            List<Path> entries;
+            try (Stream<Path> files = Files.list(cacheDirectory)) {
+                entries = files
+                        .filter(path -> isEntry(path, directory))
+                        .sorted(Comparator.comparing(DataCache::getLastModified).reversed())
+                        .collect(Collectors.toList());
+            }
+
+            for (Path path : entries.subList(Math.min(maxEntries, entries.size()), entries.size())) {
+                Files.delete(path);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write {} data to cache", directory, e);
+        }
+    }
+
+    private static boolean isEntry(Path path, String directory) {
+        String fileName = path.getFileName().toString();
+        // hashes never contain dashes, this avoids matching entries for other directories that share a prefix
+        return fileName.startsWith(directory + "-") && fileName.endsWith(extension)
+                && fileName.indexOf('-', directory.length() + 1) == -1;
+    }
+
+    private static FileTime getLastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
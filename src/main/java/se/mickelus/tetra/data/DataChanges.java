@@ -0,0 +1,85 @@
+package se.mickelus.tetra.data;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import net.minecraft.util.ResourceLocation;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The set of entries that changed when a data store was reloaded, entries are compared by a hash of their raw json content.
+ */
+public class DataChanges {
+    public final Set<ResourceLocation> added;
+    public final Set<ResourceLocation> modified;
+    public final Set<ResourceLocation> removed;
+
+    public DataChanges(Set<ResourceLocation> added, Set<ResourceLocation> modified, Set<ResourceLocation> removed) {
+        this.added = added;
+        this.modified = modified;
+        this.removed = removed;
+    }
+
+    /**
+     * Compares two versions of data.
+     * @param previous content hashes of the previous data, or null if no data has been loaded before
+     * @param current content hashes of the current data
+     */
+    public static <T> DataChanges compare(@Nullable Map<ResourceLocation, T> previous, Map<ResourceLocation, T> current) {
+        if (previous == null) {
+            return new DataChanges(ImmutableSet.copyOf(current.keySet()), Collections.emptySet(), Collections.emptySet());
+        }
+
+        return new DataChanges(
+                ImmutableSet.copyOf(Sets.difference(current.keySet(), previous.keySet())),
+                current.keySet().stream()
+                        .filter(previous::containsKey)
+                        .filter(key -> !Objects.equals(previous.get(key), current.get(key)))
+                        .collect(ImmutableSet.toImmutableSet()),
+                ImmutableSet.copyOf(Sets.difference(previous.keySet(), current.keySet())));
+    }
+
+    /**
+     * Compares two versions of data, entries present in both versions are considered modified regardless of their content. Used when
+     * all entries have to be parsed again.
+     * @param previous content hashes of the previous data, or null if no data has been loaded before
+     * @param current content hashes of the current data
+     */
+    public static <T> DataChanges compareAll(@Nullable Map<ResourceLocation, T> previous, Map<ResourceLocation, T> current) {
+        if (previous == null) {
+            return compare(null, current);
+        }
+
+        return new DataChanges(
+                ImmutableSet.copyOf(Sets.difference(current.keySet(), previous.keySet())),
+                ImmutableSet.copyOf(Sets.intersection(current.keySet(), previous.keySet())),
+                ImmutableSet.copyOf(Sets.difference(previous.keySet(), current.keySet())));
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && modified.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * @return keys for entries that were added or modified
+     */
+    public Set<ResourceLocation> getChanged() {
+        return Sets.union(added, modified);
+    }
+
+    /**
+     * @return keys for entries that were added, modified or removed
+     */
+    public Set<ResourceLocation> getAll() {
+        return Sets.union(getChanged(), removed);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d added, %d modified, %d removed", added.size(), modified.size(), removed.size());
+    }
+}
@@ -0,0 +1,51 @@
+package se.mickelus.tetra.data;
+
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.network.PacketBuffer;
+import se.mickelus.tetra.network.AbstractPacket;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Content hashes of data stores, per directory. Sent by the server when a player connects, the client loads what it has cached and
+ * answers with the hashes of the data it has loaded. The server then only sends data for the stores that the client is missing.
+ */
+public class DataHashPacket extends AbstractPacket {
+
+    private Map<String, String> hashes;
+
+    public DataHashPacket() {}
+
+    public DataHashPacket(Map<String, String> hashes) {
+        this.hashes = hashes;
+    }
+
+    @Override
+    public void toBytes(PacketBuffer buffer) {
+        buffer.writeVarInt(hashes.size());
+        hashes.forEach((directory, hash) -> {
+            buffer.writeString(directory);
+            buffer.writeString(hash);
+        });
+    }
+
+    @Override
+    public void fromBytes(PacketBuffer buffer) {
+        int count = buffer.readVarInt();
+        hashes = new HashMap<>(count);
+        for (int i = 0; i < count; i++) {
+            hashes.put(buffer.readString(), buffer.readString());
+        }
+    }
+
+    @Override
+    public void handle(PlayerEntity player) {
+        if (player instanceof ServerPlayerEntity) {
+            DataManager.instance.onCachedHashesReceived((ServerPlayerEntity) player, hashes);
+        } else {
+            DataManager.instance.onHashesReceived(hashes);
+        }
+    }
+}
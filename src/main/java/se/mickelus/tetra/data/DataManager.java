@@ -2,6 +2,7 @@ package se.mickelus.tetra.data;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
 import net.minecraft.advancements.criterion.ItemPredicate;
 import net.minecraft.block.Block;
 import net.minecraft.enchantment.Enchantment;
@@ -15,9 +16,11 @@ import net.minecraft.world.storage.loot.conditions.ILootCondition;
 import net.minecraft.world.storage.loot.conditions.LootConditionManager;
 import net.minecraft.world.storage.loot.functions.ILootFunction;
 import net.minecraft.world.storage.loot.functions.LootFunctionManager;
+import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.event.server.FMLServerAboutToStartEvent;
+import net.minecraftforge.fml.server.ServerLifecycleHooks;
 import net.minecraftforge.forgespi.Environment;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -31,15 +34,23 @@ import se.mickelus.tetra.module.ReplacementDefinition;
 import se.mickelus.tetra.module.data.*;
 import se.mickelus.tetra.module.improvement.DestabilizationEffect;
 import se.mickelus.tetra.module.schema.Material;
+import se.mickelus.tetra.module.schema.OutcomeDefinition;
 import se.mickelus.tetra.module.schema.SchemaDefinition;
+import se.mickelus.tetra.network.PacketHandler;
 
-import java.util.Arrays;
-import java.util.Map;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
 
 public class DataManager {
 
     private Logger logger = LogManager.getLogger();
 
+    // client side, decoded data held back while waiting for the server to send the stores that were missing from the cache
+    private final Map<DataStore, Map<ResourceLocation, JsonElement>> pendingData = new HashMap<>();
+    private final Set<String> awaitedStores = new HashSet<>();
+
     // todo: use the same naming for all deserializers?
     public static final Gson gson = new GsonBuilder()
             .registerTypeAdapter(CapabilityData.class, new CapabilityData.Deserializer())
@@ -60,6 +71,13 @@ public class DataManager {
             .registerTypeAdapter(ILootFunction.class, new LootFunctionManager.Serializer())
             .registerTypeAdapter(ILootCondition.class, new LootConditionManager.Serializer())
             .registerTypeAdapter(LootContext.EntityTarget.class, new LootContext.EntityTarget.Serializer())
+            .registerTypeAdapterFactory(StreamingDataAdapter.factory(ModuleData.class, ModuleData.Adapter::new))
+            .registerTypeAdapterFactory(StreamingDataAdapter.factory(ModuleVariantData.class,
+                    (gson, delegate) -> new ModuleVariantData.Adapter<>(gson, delegate, ModuleVariantData::new)))
+            .registerTypeAdapterFactory(StreamingDataAdapter.factory(ImprovementData.class, ImprovementData.Adapter::new))
+            .registerTypeAdapterFactory(StreamingDataAdapter.factory(SchemaDefinition.class, SchemaDefinition.Adapter::new))
+            .registerTypeAdapterFactory(StreamingDataAdapter.factory(OutcomeDefinition.class, OutcomeDefinition.Adapter::new))
+            .registerTypeAdapterFactory(StreamingDataAdapter.factory(FeatureParameters.class, FeatureParameters.Adapter::new))
             .create();
 
     public static DataStore<TweakData[]> tweakData = new DataStore<>(gson, "tweaks", TweakData[].class);
@@ -69,10 +87,10 @@ public class DataManager {
             EnchantmentMapping[].class);
     public static DataStore<SynergyData[]> synergyData = new DataStore<>(gson, "synergies", SynergyData[].class);
     public static DataStore<ReplacementDefinition[]> replacementData = new DataStore<>(gson, "replacements",
-            ReplacementDefinition[].class);
-    public static DataStore<SchemaDefinition[]> schemaData = new DataStore<>(gson, "schemas", SchemaDefinition[].class);
-    public static DataStore<ItemPredicate[]> predicateData = new DataStore<>(gson, "predicates", ItemPredicate[].class);
-    public static DataStore<ConfigActionImpl[]> actionData = new DataStore<>(gson, "actions", ConfigActionImpl[].class);
+            ReplacementDefinition[].class).dependsOnTags();
+    public static DataStore<SchemaDefinition[]> schemaData = new DataStore<>(gson, "schemas", SchemaDefinition[].class).dependsOnTags();
+    public static DataStore<ItemPredicate[]> predicateData = new DataStore<>(gson, "predicates", ItemPredicate[].class).dependsOnTags();
+    public static DataStore<ConfigActionImpl[]> actionData = new DataStore<>(gson, "actions", ConfigActionImpl[].class).dependsOnTags();
     public static DataStore<DestabilizationEffect[]> destabilizationData = new DataStore<>(gson, "destabilization",
             DestabilizationEffect[].class);
     public static DataStore<FeatureParameters> featureData = new FeatureStore(gson, "structures");
@@ -95,34 +113,162 @@ public class DataManager {
         }
     }
 
+    /**
+     * Item tags are reloaded separately from data, stores that depend on tags are refreshed once tags have been updated. Clients connected
+     * to a remote server receive tags in a separate packet. The integrated server shares stores and tags with its client, so only the
+     * server refreshes them in that case.
+     */
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.START) {
+            refreshTags();
+        }
+    }
+
+    @SubscribeEvent
+    public void onClientTick(TickEvent.ClientTickEvent event) {
+        if (event.phase == TickEvent.Phase.START && ServerLifecycleHooks.getCurrentServer() == null) {
+            refreshTags();
+        }
+    }
+
+    private void refreshTags() {
+        for (DataStore dataStore : dataStores) {
+            dataStore.refreshTags();
+        }
+    }
+
     @SubscribeEvent
     public void playerConnected(PlayerEvent.PlayerLoggedInEvent event) {
         if (Environment.get().getDist().isDedicatedServer()) {
-            logger.info("Sending data to client: {}", event.getPlayer().getName());
-            for (DataStore dataStore : dataStores) {
-                dataStore.sendToPlayer((ServerPlayerEntity) event.getPlayer());
+            logger.info("Sending data hashes to client: {}", event.getPlayer().getName());
+            Map<String, String> hashes = Arrays.stream(dataStores)
+                    .collect(Collectors.toMap(DataStore::getDirectory, DataStore::getSyncHash));
+            PacketHandler.sendTo(new DataHashPacket(hashes), (ServerPlayerEntity) event.getPlayer());
+        }
+    }
+
+    /**
+     * Called on the client when the server has sent the hashes of its data, decodes all data that is available in the local cache and
+     * tells the server what data has been loaded. Cached data is held back until the server has sent the stores that were missing, some
+     * stores depend on others when they are parsed so all stores are then parsed together in the regular order. Stores without a hash
+     * could not be encoded on the server, those are neither read from the cache nor awaited.
+     * @param hashes the hash of the data for each store, by directory
+     */
+    public void onHashesReceived(Map<String, String> hashes) {
+        pendingData.clear();
+        awaitedStores.clear();
+
+        Map<String, String> cachedHashes = new HashMap<>();
+        for (DataStore dataStore : dataStores) {
+            String hash = hashes.get(dataStore.getDirectory());
+            if (hash != null && !hash.isEmpty()) {
+                Map<ResourceLocation, JsonElement> cached = decodeData(dataStore.getDirectory(), DataCache.read(dataStore.getDirectory(), hash));
+                if (cached != null) {
+                    pendingData.put(dataStore, cached);
+                    cachedHashes.put(dataStore.getDirectory(), hash);
+                } else {
+                    awaitedStores.add(dataStore.getDirectory());
+                }
             }
         }
+
+        logger.info("Loaded {} of {} data stores from cache", cachedHashes.size(), hashes.size());
+        PacketHandler.sendToServer(new DataHashPacket(cachedHashes));
+
+        if (awaitedStores.isEmpty()) {
+            loadPendingData();
+        }
     }
 
-    public void onDataRecieved(String directory, Map<ResourceLocation, String> data) {
+    /**
+     * Called on the server when a client has responded with the hashes of the data it has loaded from its cache, sends all data that the
+     * client does not have. Stores without a hash cannot be cached and are always sent.
+     * @param player the player that responded
+     * @param cachedHashes the hashes of the data that the client has loaded, by directory
+     */
+    public void onCachedHashesReceived(ServerPlayerEntity player, Map<String, String> cachedHashes) {
+        List<DataStore> missing = Arrays.stream(dataStores)
+                .filter(dataStore -> dataStore.getSyncHash().isEmpty()
+                        || !dataStore.getSyncHash().equals(cachedHashes.get(dataStore.getDirectory())))
+                .collect(Collectors.toList());
+
+        logger.info("Sending data to client: {}, {} of {} data stores were cached", player.getName(),
+                dataStores.length - missing.size(), dataStores.length);
+        missing.forEach(dataStore -> dataStore.sendToPlayer(player));
+    }
+
+    /**
+     * Called on the client when data has been received from the server, full data is written to the cache. Deltas are not cached as the
+     * resulting data would not match the hash of the data on the server, the next time the player connects the full data is sent instead.
+     * Data received while other stores are still awaited is held back until all stores have arrived.
+     * @param directory the directory of the data store that the data belongs to
+     * @param data encoded data
+     * @param delta true if the data only contains entries that changed
+     */
+    public void onDataRecieved(String directory, byte[] data, boolean delta) {
         Arrays.stream(dataStores)
                 .filter(dataStore -> dataStore.getDirectory().equals(directory))
-                .forEach(dataStore -> dataStore.loadFromPacket(data));
+                .findFirst()
+                .ifPresent(dataStore -> {
+                    Map<ResourceLocation, JsonElement> decoded = decodeData(directory, data);
+                    if (decoded == null) {
+                        return;
+                    }
+
+                    if (delta) {
+                        if (pendingData.containsKey(dataStore)) {
+                            decoded.forEach((key, json) -> {
+                                if (json.isJsonNull()) {
+                                    pendingData.get(dataStore).remove(key);
+                                } else {
+                                    pendingData.get(dataStore).put(key, json);
+                                }
+                            });
+                        } else if (!awaitedStores.contains(directory)) {
+                            // awaited stores will receive full data that already contains the changes
+                            dataStore.loadDeltaFromPacket(decoded);
+                        }
+                    } else {
+                        DataCache.write(directory, data);
+
+                        if (awaitedStores.remove(directory)) {
+                            pendingData.put(dataStore, decoded);
+                            if (awaitedStores.isEmpty()) {
+                                loadPendingData();
+                            }
+                        } else {
+                            dataStore.loadFromPacket(decoded);
+                        }
+                    }
+                });
+    }
+
+    private void loadPendingData() {
+        Arrays.stream(dataStores)
+                .filter(pendingData::containsKey)
+                .forEach(dataStore -> dataStore.loadFromPacket(pendingData.get(dataStore)));
+        pendingData.clear();
+    }
+
+    @Nullable
+    private Map<ResourceLocation, JsonElement> decodeData(String directory, @Nullable byte[] data) {
+        if (data != null) {
+            try {
+                return CompactJsonCodec.decode(data);
+            } catch (IOException e) {
+                logger.error("Failed to decode {} data", directory, e);
+            }
+        }
+        return null;
     }
 
     /**
-     * Wrapped data getter for synergy data so that data may be ordered in such a way that it's efficiently compared. Skipping this step
-     * would cause items to incorrectly gain synergies.
+     * Wrapped data getter for synergy data, synergies are compiled for matching by the items that use them so the data is returned as is.
      * @param path The path to the synergy data
      * @return An array of synergy data
      */
     public SynergyData[] getSynergyData(String path) {
-        SynergyData[] data = synergyData.getData(new ResourceLocation(TetraMod.MOD_ID, path));
-        for (SynergyData entry : data) {
-            Arrays.sort(entry.moduleVariants);
-            Arrays.sort(entry.modules);
-        }
-        return data;
+        return synergyData.getData(new ResourceLocation(TetraMod.MOD_ID, path));
     }
 }
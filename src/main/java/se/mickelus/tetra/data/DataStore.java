@@ -1,15 +1,19 @@
 package se.mickelus.tetra.data;
 
 import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonParseException;
 import net.minecraft.client.resources.ReloadListener;
 import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.profiler.IProfiler;
 import net.minecraft.resources.IResource;
 import net.minecraft.resources.IResourceManager;
+import net.minecraft.tags.ItemTags;
 import net.minecraft.util.JSONUtils;
 import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.forgespi.Environment;
@@ -17,22 +21,48 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import se.mickelus.tetra.network.PacketHandler;
 
+import javax.annotation.Nullable;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class DataStore<V> extends ReloadListener<Map<ResourceLocation, JsonElement>> {
     private static final Logger logger = LogManager.getLogger();
     protected static final int jsonExtLength = ".json".length();
 
+    // data stores are prepared concurrently by the resource manager, files within each store are read in parallel using this pool
+    protected static final ForkJoinPool preparePool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("Tetra data reader " + thread.getPoolIndex());
+                // deserializers may look up mod classes through the context class loader
+                thread.setContextClassLoader(DataStore.class.getClassLoader());
+                return thread;
+            }, null, false);
+
     protected Gson gson;
     protected String directory;
     protected Class<V> dataClass;
 
-    protected Map<ResourceLocation, JsonElement> rawData;
+    // raw data is only kept in its encoded form, as packets used to sync data to clients and the hash of the synced data
+    private List<UpdateDataPacket> syncPackets = Collections.emptyList();
+    private String syncHash = "";
+    // content hashes for the raw data of each entry that was last parsed, used to determine what has changed when data is reloaded
+    private Map<ResourceLocation, HashCode> entryHashes;
     protected Map<ResourceLocation, V> dataMap;
-    protected List<Runnable> listeners;
+
+    // item predicates bind item tags when they are parsed, stores with data that contain predicates keep their raw data so that all
+    // entries can be parsed again when tags are reloaded
+    private boolean dependsOnTags = false;
+    private Map<ResourceLocation, JsonElement> rawData;
+    private int tagGeneration = -1;
+
+    protected List<Consumer<DataChanges>> listeners;
 
     public DataStore(Gson gson, String directory, Class<V> dataClass) {
         this.gson = gson;
@@ -45,93 +75,243 @@ public class DataStore<V> extends ReloadListener<Map<ResourceLocation, JsonEleme
         listeners = new LinkedList<>();
     }
 
+    /**
+     * Marks this store as holding data that binds item tags when parsed, e.g. item predicates. All entries are parsed again when item
+     * tags have been reloaded.
+     * @return this store
+     */
+    public DataStore<V> dependsOnTags() {
+        dependsOnTags = true;
+        return this;
+    }
+
     protected Map<ResourceLocation, JsonElement> prepare(IResourceManager resourceManager, IProfiler profiler) {
         logger.debug("Reading data for {} data store...", directory);
-        Map<ResourceLocation, JsonElement> map = Maps.newHashMap();
-        int i = this.directory.length() + 1;
-
-        for(ResourceLocation fullLocation : resourceManager.getAllResourceLocations(directory, rl -> rl.endsWith(".json"))) {
-            String path = fullLocation.getPath();
-            ResourceLocation location = new ResourceLocation(fullLocation.getNamespace(), path.substring(i, path.length() - jsonExtLength));
+        long start = System.nanoTime();
 
-            try (
-                    IResource resource = resourceManager.getResource(fullLocation);
-                    InputStream inputStream = resource.getInputStream();
-                    Reader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
-            ) {
-                JsonElement json;
+        List<ResourceLocation> fullLocations = new ArrayList<>(resourceManager.getAllResourceLocations(directory,
+                rl -> rl.endsWith(".json")));
+        List<JsonElement> jsonElements = readParallel(fullLocations, fullLocation -> readResource(resourceManager, fullLocation));
 
-                if (dataClass.isArray()) {
-                    json = JSONUtils.fromJson(gson, reader, JsonArray.class);
-                } else {
-                    json = JSONUtils.fromJson(gson, reader, JsonElement.class);
-                }
-                if (json != null) {
-                    JsonElement duplicate = map.put(location, json);
-                    if (duplicate != null) {
-                        throw new IllegalStateException("Duplicate data file ignored with ID " + location);
-                    }
-                } else {
-                    logger.error("Couldn't load data file {} from {} as it's null or empty", location, fullLocation);
+        Map<ResourceLocation, JsonElement> map = Maps.newHashMap();
+        for (int i = 0; i < fullLocations.size(); i++) {
+            if (jsonElements.get(i) != null) {
+                ResourceLocation location = getDataLocation(fullLocations.get(i));
+                JsonElement duplicate = map.put(location, jsonElements.get(i));
+                if (duplicate != null) {
+                    throw new IllegalStateException("Duplicate data file ignored with ID " + location);
                 }
-            } catch (IllegalArgumentException | IOException | JsonParseException jsonparseexception) {
-                logger.error("Couldn't parse data file {} from {}", location, fullLocation, jsonparseexception);
             }
         }
 
+        logPrepareTime(map.size(), start);
+
         return map;
     }
 
+    @Nullable
+    private JsonElement readResource(IResourceManager resourceManager, ResourceLocation fullLocation) {
+        try (
+                IResource resource = resourceManager.getResource(fullLocation);
+                InputStream inputStream = resource.getInputStream();
+                Reader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        ) {
+            JsonElement json;
+
+            if (dataClass.isArray()) {
+                json = JSONUtils.fromJson(gson, reader, JsonArray.class);
+            } else {
+                json = JSONUtils.fromJson(gson, reader, JsonElement.class);
+            }
+
+            if (json == null) {
+                logger.error("Couldn't load data file {} from {} as it's null or empty", getDataLocation(fullLocation), fullLocation);
+            }
+
+            return json;
+        } catch (IllegalArgumentException | IOException | JsonParseException jsonparseexception) {
+            logger.error("Couldn't parse data file {} from {}", getDataLocation(fullLocation), fullLocation, jsonparseexception);
+        }
+
+        return null;
+    }
+
+    /**
+     * Maps each location to a value using the shared prepare pool, reading and parsing data files is the bulk of the time spent preparing
+     * a data store. The mapping function is expected to handle its own errors.
+     * @return a list of the mapped values, in the same order as the given locations
+     */
+    protected <T> List<T> readParallel(List<ResourceLocation> locations, Function<ResourceLocation, T> mapper) {
+        return preparePool.submit(() -> locations.parallelStream()
+                .map(mapper)
+                .collect(Collectors.toList()))
+                .join();
+    }
+
+    /**
+     * @param fullLocation the location of a data file, e.g. "tetra:modules/sword/blade.json"
+     * @return the location used to identify the data, e.g. "tetra:sword/blade"
+     */
+    protected ResourceLocation getDataLocation(ResourceLocation fullLocation) {
+        String path = fullLocation.getPath();
+        return new ResourceLocation(fullLocation.getNamespace(), path.substring(directory.length() + 1, path.length() - jsonExtLength));
+    }
+
+    protected void logPrepareTime(int count, long start) {
+        logger.info("Read {} {} in {}ms", String.format("%3d", count), directory, (System.nanoTime() - start) / 1000000);
+    }
+
     @Override
     protected void apply(Map<ResourceLocation, JsonElement> splashList, IResourceManager resourceManager, IProfiler profiler) {
-        rawData = splashList;
+        boolean isInitialLoad = entryHashes == null;
+        DataChanges changes = parseData(splashList);
 
         if (Environment.get().getDist().isDedicatedServer()) {
-            PacketHandler.sendToAllPlayers(new UpdateDataPacket(directory, rawData));
+            encodeSyncData(splashList);
+
+            if (!isInitialLoad && !changes.isEmpty()) {
+                sendDelta(splashList, changes);
+            }
         }
+    }
 
-        parseData(splashList);
+    private void encodeSyncData(Map<ResourceLocation, JsonElement> splashList) {
+        try {
+            byte[] encoded = CompactJsonCodec.encode(splashList);
+            syncPackets = UpdateDataPacket.create(directory, encoded, false);
+            syncHash = DataCache.hash(encoded);
+        } catch (IOException e) {
+            logger.error("Failed to encode {} data for syncing", directory, e);
+            syncPackets = Collections.emptyList();
+            syncHash = "";
+        }
+    }
+
+    /**
+     * Sends changed entries to all players, removed entries are sent as json null.
+     */
+    private void sendDelta(Map<ResourceLocation, JsonElement> splashList, DataChanges changes) {
+        Map<ResourceLocation, JsonElement> delta = new HashMap<>();
+        changes.getChanged().forEach(key -> delta.put(key, splashList.get(key)));
+        changes.removed.forEach(key -> delta.put(key, JsonNull.INSTANCE));
+
+        try {
+            UpdateDataPacket.create(directory, CompactJsonCodec.encode(delta), true).forEach(PacketHandler::sendToAllPlayers);
+        } catch (IOException e) {
+            logger.error("Failed to encode {} data for syncing", directory, e);
+        }
     }
 
     public void sendToPlayer(ServerPlayerEntity player) {
-        PacketHandler.sendTo(new UpdateDataPacket(directory, rawData), player);
+        syncPackets.forEach(packet -> PacketHandler.sendTo(packet, player));
     }
 
-    public void loadFromPacket(Map<ResourceLocation, String> data) {
-        Map<ResourceLocation, JsonElement> splashList = data.entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        entry -> {
-                            if (dataClass.isArray()) {
-                                return JSONUtils.fromJson(gson, entry.getValue(), JsonArray.class);
-                            } else {
-                                return JSONUtils.fromJson(gson, entry.getValue(), JsonElement.class);
-                            }
-                        }
-                ));
+    /**
+     * @return a hash of the data that is synced to clients, used by clients to check if they have the data cached
+     */
+    public String getSyncHash() {
+        return syncHash;
+    }
 
-        parseData(splashList);
+    public void loadFromPacket(Map<ResourceLocation, JsonElement> data) {
+        parseData(data);
     }
 
-    public void parseData(Map<ResourceLocation, JsonElement> splashList) {
-        logger.info("Loaded {} {}", String.format("%3d", splashList.values().size()), directory);
-        dataMap = splashList.entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        entry -> gson.fromJson(entry.getValue(), dataClass)
-                ));
+    /**
+     * Applies changed entries on top of the currently loaded data, entries with a json null value are removed.
+     */
+    public void loadDeltaFromPacket(Map<ResourceLocation, JsonElement> delta) {
+        Map<ResourceLocation, HashCode> hashes = entryHashes != null ? new HashMap<>(entryHashes) : new HashMap<>();
+        delta.forEach((key, json) -> {
+            if (json.isJsonNull()) {
+                hashes.remove(key);
+            } else {
+                hashes.put(key, hashEntry(json));
+            }
+        });
+
+        if (dependsOnTags) {
+            Map<ResourceLocation, JsonElement> data = rawData != null ? new HashMap<>(rawData) : new HashMap<>();
+            delta.forEach((key, json) -> {
+                if (json.isJsonNull()) {
+                    data.remove(key);
+                } else {
+                    data.put(key, json);
+                }
+            });
+            rawData = data;
+            applyChanges(data, hashes);
+        } else {
+            applyChanges(delta, hashes);
+        }
+    }
+
+    /**
+     * Parses all entries again if this store depends on tags and item tags have been reloaded since data was last parsed.
+     */
+    public void refreshTags() {
+        if (rawData != null && entryHashes != null && tagGeneration != ItemTags.getGeneration()) {
+            applyChanges(rawData, entryHashes);
+        }
+    }
+
+    /**
+     * Parses raw data, only entries that have been added or modified since data was last parsed are deserialized. Listeners are only
+     * called if something has changed.
+     * @param splashList raw data
+     * @return the entries that changed
+     */
+    public DataChanges parseData(Map<ResourceLocation, JsonElement> splashList) {
+        Map<ResourceLocation, HashCode> hashes = splashList.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> hashEntry(entry.getValue())));
+
+        if (dependsOnTags) {
+            rawData = splashList;
+        }
+
+        return applyChanges(splashList, hashes);
+    }
+
+    /**
+     * @param entries raw data, has to contain all entries that have been added or modified
+     * @param hashes hashes for all entries, after the changes have been applied
+     */
+    private DataChanges applyChanges(Map<ResourceLocation, JsonElement> entries, Map<ResourceLocation, HashCode> hashes) {
+        DataChanges changes;
+        if (dependsOnTags && tagGeneration != ItemTags.getGeneration()) {
+            changes = DataChanges.compareAll(entryHashes, hashes);
+        } else {
+            changes = DataChanges.compare(entryHashes, hashes);
+        }
+        tagGeneration = ItemTags.getGeneration();
+        logger.info("Loaded {} {} ({})", String.format("%3d", hashes.size()), directory, changes);
+
+        entryHashes = hashes;
+
+        Map<ResourceLocation, V> result = new HashMap<>(dataMap);
+        changes.removed.forEach(result::remove);
+        changes.getChanged().forEach(key -> result.put(key, parseEntry(entries.get(key))));
+        dataMap = result;
 
         processData();
 
-        listeners.forEach(Runnable::run);
+        if (!changes.isEmpty()) {
+            listeners.forEach(listener -> listener.accept(changes));
+        }
+
+        return changes;
     }
 
-    protected void processData() {
+    private static HashCode hashEntry(JsonElement json) {
+        return Hashing.murmur3_128().hashString(json.toString(), StandardCharsets.UTF_8);
+    }
 
+    protected V parseEntry(JsonElement json) {
+        return gson.fromJson(json, dataClass);
     }
 
-    public Map<ResourceLocation, JsonElement> getRawData() {
-        return rawData;
+    protected void processData() {
+
     }
 
     public String getDirectory() {
@@ -158,9 +338,18 @@ public class DataStore<V> extends ReloadListener<Map<ResourceLocation, JsonEleme
     /**
      * Listen to changes on resources in this store
      *
-     * @param callback A runnable that is to be called when the store is reloaded
+     * @param callback A runnable that is to be called when the store is reloaded and something has changed
      */
     public void onReload(Runnable callback) {
+        listeners.add(changes -> callback.run());
+    }
+
+    /**
+     * Listen to changes on resources in this store, for listeners that only need to update data for the entries that have changed
+     *
+     * @param callback A consumer that is to be called with the changed entries when the store is reloaded and something has changed
+     */
+    public void onChange(Consumer<DataChanges> callback) {
         listeners.add(callback);
     }
 }
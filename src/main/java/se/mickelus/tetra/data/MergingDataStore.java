@@ -10,16 +10,15 @@ import net.minecraft.resources.IResource;
 import net.minecraft.resources.IResourceManager;
 import net.minecraft.util.JSONUtils;
 import net.minecraft.util.ResourceLocation;
-import net.minecraftforge.forgespi.Environment;
 import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import se.mickelus.tetra.network.PacketHandler;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public abstract class MergingDataStore<V, U> extends DataStore<V> {
     private static final Logger logger = LogManager.getLogger();
@@ -32,83 +31,61 @@ public abstract class MergingDataStore<V, U> extends DataStore<V> {
         this.arrayClass = arrayClass;
     }
 
+    /**
+     * Files are read in parallel, but resources for each file are always added in the order of the data packs they're from so that the
+     * merge order is deterministic.
+     */
     @Override
     protected Map<ResourceLocation, JsonElement> prepare(IResourceManager resourceManager, IProfiler profiler) {
         logger.debug("Reading data for {} data store...", directory);
-        Map<ResourceLocation, JsonElement> map = Maps.newHashMap();
-        int i = this.directory.length() + 1;
-
-        for(ResourceLocation fullLocation : resourceManager.getAllResourceLocations(directory, rl -> rl.endsWith(".json"))) {
-            String path = fullLocation.getPath();
-            ResourceLocation location = new ResourceLocation(fullLocation.getNamespace(), path.substring(i, path.length() - jsonExtLength));
-
-            JsonArray allResources = new JsonArray();
-
-            try {
-                for (IResource resource : resourceManager.getAllResources(fullLocation)) {
-                    try (
-                            InputStream inputstream = resource.getInputStream();
-                            Reader reader = new BufferedReader(new InputStreamReader(inputstream, StandardCharsets.UTF_8));
-                    ) {
-                        JsonObject json = JSONUtils.fromJson(gson, reader, JsonObject.class);
-                        if (json != null) {
-                            allResources.add(json);
-                        } else {
-                            logger.error("Couldn't load data from {} in data pack {} as it's empty or null",
-                                    fullLocation, resource.getPackName());
-                        }
-                    } catch (RuntimeException | IOException e) {
-                        logger.error("Couldn't load data from {} in data pack {}", fullLocation, resource.getPackName(), e);
-                    } finally {
-                        IOUtils.closeQuietly(resource);
-                    }
-                }
-            } catch (IOException e) {
-                logger.error("Couldn't load data from {}", fullLocation, e);
-            }
+        long start = System.nanoTime();
+
+        List<ResourceLocation> fullLocations = new ArrayList<>(resourceManager.getAllResourceLocations(directory,
+                rl -> rl.endsWith(".json")));
+        List<JsonArray> jsonArrays = readParallel(fullLocations, fullLocation -> readResources(resourceManager, fullLocation));
 
-            map.put(location, allResources);
+        Map<ResourceLocation, JsonElement> map = Maps.newHashMap();
+        for (int i = 0; i < fullLocations.size(); i++) {
+            map.put(getDataLocation(fullLocations.get(i)), jsonArrays.get(i));
         }
 
+        logPrepareTime(map.size(), start);
+
         return map;
     }
 
-    @Override
-    protected void apply(Map<ResourceLocation, JsonElement> splashList, IResourceManager resourceManager, IProfiler profiler) {
-        rawData = splashList;
-
-        if (Environment.get().getDist().isDedicatedServer()) {
-            PacketHandler.sendToAllPlayers(new UpdateDataPacket(directory, rawData));
+    private JsonArray readResources(IResourceManager resourceManager, ResourceLocation fullLocation) {
+        JsonArray allResources = new JsonArray();
+
+        try {
+            for (IResource resource : resourceManager.getAllResources(fullLocation)) {
+                try (
+                        InputStream inputstream = resource.getInputStream();
+                        Reader reader = new BufferedReader(new InputStreamReader(inputstream, StandardCharsets.UTF_8));
+                ) {
+                    JsonObject json = JSONUtils.fromJson(gson, reader, JsonObject.class);
+                    if (json != null) {
+                        allResources.add(json);
+                    } else {
+                        logger.error("Couldn't load data from {} in data pack {} as it's empty or null",
+                                fullLocation, resource.getPackName());
+                    }
+                } catch (RuntimeException | IOException e) {
+                    logger.error("Couldn't load data from {} in data pack {}", fullLocation, resource.getPackName(), e);
+                } finally {
+                    IOUtils.closeQuietly(resource);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Couldn't load data from {}", fullLocation, e);
         }
 
-        parseData(splashList);
+        return allResources;
     }
 
     @Override
-    public void loadFromPacket(Map<ResourceLocation, String> data) {
-        Map<ResourceLocation, JsonElement> splashList = data.entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        entry -> JSONUtils.fromJson(gson, entry.getValue(), JsonArray.class)
-                ));
-
-        parseData(splashList);
-    }
-
-    public void parseData(Map<ResourceLocation, JsonElement> splashList) {
-        logger.info("Loaded {} {}", String.format("%3d", splashList.values().size()), directory);
-        dataMap = splashList.entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        entry -> mergeData(gson.fromJson(entry.getValue(), arrayClass))
-                ));
-
-        processData();
-
-        listeners.forEach(Runnable::run);
-    }
-
-    protected void processData() {
+    protected V parseEntry(JsonElement json) {
+        return mergeData(gson.fromJson(json, arrayClass));
     }
 
     protected abstract V mergeData(U collection);
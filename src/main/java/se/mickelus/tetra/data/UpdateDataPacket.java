@@ -1,53 +1,112 @@
 package se.mickelus.tetra.data;
 
-import com.google.gson.JsonElement;
 import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.network.PacketBuffer;
-import net.minecraft.util.ResourceLocation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import se.mickelus.tetra.network.AbstractPacket;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.io.ByteArrayOutputStream;
+import java.util.*;
 
+/**
+ * Syncs the raw data of a data store to clients. Data is encoded using the {@link CompactJsonCodec} and split into several packets if
+ * it's too large to fit into a single packet, parts are collected on the client until the data for the store is complete. When data is
+ * reloaded only the entries that changed are sent, as a delta.
+ */
 public class UpdateDataPacket extends AbstractPacket {
+    private static final Logger logger = LogManager.getLogger();
+
+    // custom payload packets are limited to 1MB, leave plenty of room for the packet header
+    private static final int maxPartSize = 512 * 1024;
+
+    // caps the size of the data that is collected for a single store to 32MB
+    private static final int maxParts = 64;
+
+    // parts received so far per directory, only accessed on the client thread
+    private static final Map<String, byte[][]> receivedParts = new HashMap<>();
 
     private String directory;
-    private Map<ResourceLocation, String> data;
+    private int part;
+    private int partCount;
+    private boolean delta;
+    private byte[] payload;
 
     public UpdateDataPacket() {}
 
-    public UpdateDataPacket(String directory, Map<ResourceLocation, JsonElement> data) {
+    private UpdateDataPacket(String directory, int part, int partCount, boolean delta, byte[] payload) {
         this.directory = directory;
-        this.data = data.entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        entry -> entry.getValue().toString()
-                ));
+        this.part = part;
+        this.partCount = partCount;
+        this.delta = delta;
+        this.payload = payload;
+    }
+
+    /**
+     * Splits encoded data into packets.
+     * @param directory the directory of the data store that the data belongs to
+     * @param encoded data for the data store, encoded using the {@link CompactJsonCodec}
+     * @param delta true if the data only contains changed entries
+     * @return a list of packets that should all be sent, in order
+     */
+    public static List<UpdateDataPacket> create(String directory, byte[] encoded, boolean delta) {
+        int partCount = Math.max(1, (encoded.length + maxPartSize - 1) / maxPartSize);
+        List<UpdateDataPacket> packets = new ArrayList<>(partCount);
+        for (int i = 0; i < partCount; i++) {
+            int start = i * maxPartSize;
+            packets.add(new UpdateDataPacket(directory, i, partCount, delta,
+                    Arrays.copyOfRange(encoded, start, Math.min(encoded.length, start + maxPartSize))));
+        }
+
+        return packets;
     }
 
     @Override
     public void toBytes(PacketBuffer buffer) {
         buffer.writeString(directory);
-        buffer.writeInt(data.size());
-        data.forEach((resourceLocation, data) -> {
-            buffer.writeResourceLocation(resourceLocation);
-            buffer.writeString(data);
-        });
+        buffer.writeVarInt(part);
+        buffer.writeVarInt(partCount);
+        buffer.writeBoolean(delta);
+        buffer.writeByteArray(payload);
     }
 
     @Override
     public void fromBytes(PacketBuffer buffer) {
         directory = buffer.readString();
-        int count = buffer.readInt();
-        data = new HashMap<>();
-        for (int i = 0; i < count; i++) {
-            data.put(buffer.readResourceLocation(), buffer.readString());
-        }
+        part = buffer.readVarInt();
+        partCount = buffer.readVarInt();
+        delta = buffer.readBoolean();
+        payload = buffer.readByteArray(maxPartSize);
     }
 
     @Override
     public void handle(PlayerEntity player) {
-        DataManager.instance.onDataRecieved(directory, data);
+        // data is only ever synced from the server to clients
+        if (player instanceof ServerPlayerEntity) {
+            return;
+        }
+
+        if (part < 0 || part >= partCount || partCount > maxParts) {
+            logger.warn("Received invalid data part {}/{} for '{}', ignoring", part, partCount, directory);
+            return;
+        }
+
+        byte[][] parts = receivedParts.get(directory);
+        if (part == 0 || parts == null || parts.length != partCount) {
+            parts = new byte[partCount][];
+            receivedParts.put(directory, parts);
+        }
+
+        parts[part] = payload;
+
+        if (Arrays.stream(parts).allMatch(Objects::nonNull)) {
+            receivedParts.remove(directory);
+
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            Arrays.stream(parts).forEach(bytes -> encoded.write(bytes, 0, bytes.length));
+
+            DataManager.instance.onDataRecieved(directory, encoded.toByteArray(), delta);
+        }
     }
 }
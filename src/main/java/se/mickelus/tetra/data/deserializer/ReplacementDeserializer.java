@@ -29,7 +29,18 @@ public class ReplacementDeserializer implements JsonDeserializer<ReplacementDefi
         JsonObject jsonObject = element.getAsJsonObject();
 
         try {
-            replacement.predicate = ItemPredicate.deserialize(JSONUtils.getJsonObject(jsonObject, "predicate"));
+            JsonObject predicateJson = JSONUtils.getJsonObject(jsonObject, "predicate");
+            replacement.predicate = ItemPredicate.deserialize(predicateJson);
+
+            if (!predicateJson.has("type")) {
+                if (predicateJson.has("item")) {
+                    replacement.predicateItem = ForgeRegistries.ITEMS.getValue(new ResourceLocation(JSONUtils.getString(predicateJson, "item")));
+                }
+
+                replacement.itemOnlyPredicate = predicateJson.entrySet().stream()
+                        .map(Map.Entry::getKey)
+                        .allMatch(key -> "item".equals(key) || "tag".equals(key));
+            }
         } catch (JsonSyntaxException e) {
             // todo: debug log here
 //                System.out.println(String.format("Skipping modular replacement definition due to faulty predicate: %s", JSONUtils.getJsonObject(jsonObject, "predicate").toString()));
@@ -0,0 +1,94 @@
+package se.mickelus.tetra.data.deserializer;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.function.BiFunction;
+
+/**
+ * Base for adapters that read data classes field by field from the json stream, in place of gson's reflection based adapter. Fields that
+ * are missing or null keep the default value set by the data class, unknown fields are skipped. Writing is left to the reflective
+ * adapter.
+ * @param <T> the data class
+ */
+public abstract class StreamingDataAdapter<T> extends TypeAdapter<T> {
+
+    protected final Gson gson;
+    private final TypeAdapter<T> delegate;
+
+    public StreamingDataAdapter(Gson gson, TypeAdapter<T> delegate) {
+        this.gson = gson;
+        this.delegate = delegate;
+    }
+
+    /**
+     * Creates a factory that provides adapters for the given type, register it with the gson builder.
+     * @param type the data class, subclasses are not matched
+     * @param constructor creates an adapter from a gson instance and the reflective adapter for the type
+     */
+    public static <T> TypeAdapterFactory factory(Class<T> type, BiFunction<Gson, TypeAdapter<T>, StreamingDataAdapter<T>> constructor) {
+        return new TypeAdapterFactory() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <U> TypeAdapter<U> create(Gson gson, TypeToken<U> typeToken) {
+                if (typeToken.getRawType() != type) {
+                    return null;
+                }
+
+                return (TypeAdapter<U>) constructor.apply(gson, gson.getDelegateAdapter(this, TypeToken.get(type)));
+            }
+        };
+    }
+
+    protected abstract T createInstance();
+
+    /**
+     * Reads the value of a single field into the target.
+     * @return false if the field is unknown, the value is then skipped
+     */
+    protected abstract boolean readField(JsonReader in, String name, T target) throws IOException;
+
+    protected <U> U read(JsonReader in, Class<U> type) throws IOException {
+        return gson.getAdapter(type).read(in);
+    }
+
+    protected <U> U read(JsonReader in, TypeToken<U> type) throws IOException {
+        return gson.getAdapter(type).read(in);
+    }
+
+    protected float readFloat(JsonReader in) throws IOException {
+        return (float) in.nextDouble();
+    }
+
+    @Override
+    public T read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        T result = createInstance();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL || !readField(in, name, result)) {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return result;
+    }
+
+    @Override
+    public void write(JsonWriter out, T value) throws IOException {
+        delegate.write(out, value);
+    }
+}
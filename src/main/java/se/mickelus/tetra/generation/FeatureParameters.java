@@ -1,12 +1,18 @@
 package se.mickelus.tetra.generation;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
 import com.mojang.datafixers.Dynamic;
 import com.mojang.datafixers.types.DynamicOps;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.biome.Biome;
 import net.minecraft.world.gen.feature.IFeatureConfig;
+import se.mickelus.tetra.data.deserializer.StreamingDataAdapter;
+
+import java.io.IOException;
 
 /**
  * Used to specify additional details for feature generation, containing information about where and how a feature is to
@@ -126,4 +132,56 @@ public class FeatureParameters {
     public FeatureParameters(ResourceLocation location) {
         this.location = location;
     }
+
+    public static class Adapter extends StreamingDataAdapter<FeatureParameters> {
+        public Adapter(Gson gson, TypeAdapter<FeatureParameters> delegate) {
+            super(gson, delegate);
+        }
+
+        @Override
+        protected FeatureParameters createInstance() {
+            return new FeatureParameters();
+        }
+
+        @Override
+        protected boolean readField(JsonReader in, String name, FeatureParameters target) throws IOException {
+            switch (name) {
+                case "biomes":
+                    target.biomes = read(in, String[].class);
+                    return true;
+                case "dimensions":
+                    target.dimensions = read(in, ResourceLocation[].class);
+                    return true;
+                case "probability":
+                    target.probability = readFloat(in);
+                    return true;
+                case "minY":
+                    target.minY = in.nextInt();
+                    return true;
+                case "maxY":
+                    target.maxY = in.nextInt();
+                    return true;
+                case "integrityMin":
+                    target.integrityMin = readFloat(in);
+                    return true;
+                case "integrityMax":
+                    target.integrityMax = readFloat(in);
+                    return true;
+                case "origin":
+                    target.origin = read(in, BlockPos.class);
+                    return true;
+                case "transform":
+                    target.transform = in.nextBoolean();
+                    return true;
+                case "children":
+                    target.children = read(in, FeatureChild[].class);
+                    return true;
+                case "loot":
+                    target.loot = read(in, FeatureLoot[].class);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
 }
@@ -91,8 +91,8 @@ public class GuiSynergyIndicator extends GuiElement {
                 || data.attackSpeed != 0 || data.attackSpeedMultiplier != 1
                 || data.durability != 0 || data.durabilityMultiplier != 1
                 || data.integrity != 0 || data.integrityMultiplier != 1
-                || !data.effects.valueMap.isEmpty() || !data.effects.efficiencyMap.isEmpty()
-                || !data.capabilities.valueMap.isEmpty() || !data.capabilities.efficiencyMap.isEmpty()
+                || !data.effects.isEmpty()
+                || !data.capabilities.isEmpty()
                 || data.magicCapacity != 0;
     }
 
@@ -153,17 +153,17 @@ public class GuiSynergyIndicator extends GuiElement {
             result.add(getValueMultiplier(data.integrityMultiplier) + I18n.format("stats.integrity"));
         }
 
-        data.effects.valueMap.forEach((itemEffect, level) ->
-                result.add(getValueInteger(level, 0) + I18n.format("stats." + itemEffect) + " " + I18n.format("stats.level_suffix")));
+        data.effects.getValues().forEach(itemEffect ->
+                result.add(getValueInteger(data.effects.getLevel(itemEffect), 0) + I18n.format("stats." + itemEffect) + " " + I18n.format("stats.level_suffix")));
 
-        data.effects.efficiencyMap.forEach((itemEffect, efficiency) ->
-                result.add(getValueDouble(efficiency, 0) + I18n.format("stats." + itemEffect) + " " + I18n.format("stats.strength_suffix")));
+        data.effects.getEfficiencyValues().forEach(itemEffect ->
+                result.add(getValueDouble(data.effects.getEfficiency(itemEffect), 0) + I18n.format("stats." + itemEffect) + " " + I18n.format("stats.strength_suffix")));
 
-        data.capabilities.valueMap.forEach((capability, level) ->
-                result.add(getValueInteger(level, 0) + I18n.format("capability." + capability) + " " + I18n.format("stats.tier_suffix")));
+        data.capabilities.getValues().forEach(capability ->
+                result.add(getValueInteger(data.capabilities.getLevel(capability), 0) + I18n.format("capability." + capability) + " " + I18n.format("stats.tier_suffix")));
 
-        data.capabilities.efficiencyMap.forEach((capability, efficiency) ->
-                result.add(getValueDouble(efficiency, 0) + I18n.format("capability." + capability) + " " + I18n.format("stats.efficiency_suffix")));
+        data.capabilities.getEfficiencyValues().forEach(capability ->
+                result.add(getValueDouble(data.capabilities.getEfficiency(capability), 0) + I18n.format("capability." + capability) + " " + I18n.format("stats.efficiency_suffix")));
 
         if (data.magicCapacity != 0) {
             result.add(getValueDouble(data.integrity, 0) + I18n.format("stats.magicCapacity"));
@@ -13,14 +13,14 @@ public class BasicModule extends ItemModule {
     public BasicModule(ResourceLocation identifier, ModuleData data) {
         super(data.slots[0], identifier.getPath());
 
-        variantData = data.variants;
+        setVariantData(data.variants);
 
         if (data.tweakKey != null) {
             TweakData[] tweaks = DataManager.tweakData.getData(data.tweakKey);
             if (tweaks != null) {
-                this.tweaks = tweaks;
+                setTweaks(tweaks);
             } else {
-                this.tweaks = new TweakData[0];
+                setTweaks(new TweakData[0]);
             }
         }
     }
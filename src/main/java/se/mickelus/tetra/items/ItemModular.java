@@ -1,12 +1,17 @@
 package se.mickelus.tetra.items;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.Sets;
 import net.minecraft.client.gui.screen.Screen;
 import net.minecraft.client.resources.I18n;
 import net.minecraft.client.util.ITooltipFlag;
 import net.minecraft.enchantment.Enchantment;
 import net.minecraft.enchantment.EnchantmentHelper;
-import net.minecraft.enchantment.UnbreakingEnchantment;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.ServerPlayerEntity;
@@ -28,28 +33,37 @@ import se.mickelus.tetra.NBTHelper;
 import se.mickelus.tetra.capabilities.Capability;
 import se.mickelus.tetra.capabilities.ICapabilityProvider;
 import se.mickelus.tetra.client.model.ModularModelLoader;
+import se.mickelus.tetra.data.DataManager;
 import se.mickelus.tetra.module.ItemEffect;
 import se.mickelus.tetra.module.ItemModule;
 import se.mickelus.tetra.module.ItemModuleMajor;
 import se.mickelus.tetra.module.ItemUpgradeRegistry;
+import se.mickelus.tetra.module.SynergyMatcher;
 import se.mickelus.tetra.module.data.EnchantmentMapping;
 import se.mickelus.tetra.module.data.ImprovementData;
 import se.mickelus.tetra.module.data.ModuleModel;
 import se.mickelus.tetra.module.data.SynergyData;
+import se.mickelus.tetra.module.data.TweakSteps;
 import se.mickelus.tetra.module.improvement.DestabilizationEffect;
 import se.mickelus.tetra.module.improvement.HonePacket;
+import se.mickelus.tetra.module.improvement.ProgressionTracker;
 import se.mickelus.tetra.module.schema.Material;
 import se.mickelus.tetra.network.PacketHandler;
+import se.mickelus.tetra.util.Binomial;
 import se.mickelus.tetra.util.CastOptional;
 
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public abstract class ItemModular extends TetraItem implements IItemModular, ICapabilityProvider {
 
+    protected static final String damageKey = "Damage";
+
     protected static final String repairCountKey = "repairCount";
 
     protected static final String cooledStrengthKey = "cooledStrength";
@@ -69,9 +83,25 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
     protected int baseIntegrity = 0;
 
     protected SynergyData[] synergies = new SynergyData[0];
+    private SynergyMatcher synergyMatcher = SynergyMatcher.empty;
+
+    private final Cache<ModularItemStats.CacheKey, ModularItemStats> statsCache = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(5, TimeUnit.MINUTES)
+            .build();
+
+    private static final Interner<String> modelKeyInterner = Interners.newWeakInterner();
+    private final Cache<ModularItemStats, String> modelKeyCache = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
 
     public ItemModular(Properties properties) {
         super(properties);
+
+        DataManager.moduleData.onReload(this::clearStatsCache);
+        DataManager.tweakData.onReload(this::clearStatsCache);
+        DataManager.improvementData.onReload(this::clearStatsCache);
+        DataManager.synergyData.onReload(this::clearStatsCache);
     }
 
     @Override
@@ -81,48 +111,203 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
 
     @Override
     public int getMaxDamage(ItemStack stack) {
-        return (int) ((getAllModules(stack).stream()
-                .map(itemModule -> itemModule.getDurability(stack))
-                .reduce(0, Integer::sum) + baseDurability)
-                * getDurabilityMultiplier(stack));
+        return getStats(stack).durability;
     }
 
     public float getDurabilityMultiplier(ItemStack itemStack) {
-        return getAllModules(itemStack).stream()
-                .map(itemModule -> itemModule.getDurabilityMultiplier(itemStack))
-                .reduce(1f, (a, b) -> a * b);
+        return getStats(itemStack).durabilityMultiplier;
     }
 
     public static int getIntegrityGain(ItemStack itemStack) {
         if (itemStack.getItem() instanceof ItemModular) {
-            return ((ItemModular) itemStack.getItem()).getAllModules(itemStack).stream()
-                    .map(module -> module.getIntegrityGain(itemStack))
-                    .reduce(0, Integer::sum);
+            return ((ItemModular) itemStack.getItem()).getStats(itemStack).integrityGain;
         }
         return 0;
     }
 
     public static int getIntegrityCost(ItemStack itemStack) {
         if (itemStack.getItem() instanceof ItemModular) {
-            return ((ItemModular) itemStack.getItem()).getAllModules(itemStack).stream()
-                    .map(module -> module.getIntegrityCost(itemStack))
-                    .reduce(0, Integer::sum);
+            return ((ItemModular) itemStack.getItem()).getStats(itemStack).integrityCost;
         }
         return 0;
     }
 
     protected Collection<ItemModule> getAllModules(ItemStack stack) {
-        CompoundNBT stackTag = NBTHelper.getTag(stack);
+        return getStats(stack).modules;
+    }
 
-        if (stackTag != null) {
-            return Stream.concat(Arrays.stream(majorModuleKeys),Arrays.stream(minorModuleKeys))
-                    .map(stackTag::getString)
-                    .map(ItemUpgradeRegistry.instance::getModule)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
+    /**
+     * Returns a snapshot of the stats resolved from the modules, improvements, tweaks and synergies of the given itemstack. Snapshots are
+     * cached based on the contents of the stack tag, so that stats are only resolved again when the module setup of the stack changes.
+     * @param itemStack The modular item itemstack
+     * @return A snapshot of the resolved stats
+     */
+    public ModularItemStats getStats(ItemStack itemStack) {
+        if (itemStack.isEmpty()) {
+            return ModularItemStats.empty;
+        }
+
+        ModularItemStats.CacheKey key = new ModularItemStats.CacheKey(NBTHelper.getTag(itemStack), ItemModular::isStatIndependent);
+        ModularItemStats stats = statsCache.getIfPresent(key);
+        if (stats == null) {
+            stats = computeStats(itemStack);
+            statsCache.put(key.copy(), stats);
         }
 
-        return Collections.emptyList();
+        return stats;
+    }
+
+    /**
+     * Returns the cached stat snapshot for the given itemstack without resolving stats, for lookups that may happen while stats are being
+     * resolved.
+     * @param itemStack The modular item itemstack
+     * @return The cached snapshot, or null if stats have not been resolved for the current state of the stack
+     */
+    @Nullable
+    public ModularItemStats getCachedStats(ItemStack itemStack) {
+        if (itemStack.isEmpty()) {
+            return ModularItemStats.empty;
+        }
+
+        return statsCache.getIfPresent(new ModularItemStats.CacheKey(NBTHelper.getTag(itemStack), ItemModular::isStatIndependent));
+    }
+
+    /**
+     * Invalidates all cached stat snapshots, should be called when data that modules & synergies are based on is reloaded.
+     */
+    public void clearStatsCache() {
+        statsCache.invalidateAll();
+    }
+
+    private static boolean isStatIndependent(String tagKey) {
+        return damageKey.equals(tagKey)
+                || cooledStrengthKey.equals(tagKey)
+                || repairCountKey.equals(tagKey)
+                || honeProgressKey.equals(tagKey)
+                || tagKey.endsWith(ItemModuleMajor.settleProgressSuffix);
+    }
+
+    protected ModularItemStats computeStats(ItemStack itemStack) {
+        CompoundNBT stackTag = NBTHelper.getTag(itemStack);
+
+        ImmutableList<ItemModule> modules = Stream.concat(Arrays.stream(majorModuleKeys), Arrays.stream(minorModuleKeys))
+                .map(stackTag::getString)
+                .map(ItemUpgradeRegistry.instance::getModule)
+                .filter(Objects::nonNull)
+                .collect(Collectors.collectingAndThen(Collectors.toList(), ImmutableList::copyOf));
+
+        // improvements are read from the tag once, lookups for the stack are then served from the snapshot
+        ImprovementData[][] improvements = modules.stream()
+                .map(module -> module instanceof ItemModuleMajor
+                        ? ((ItemModuleMajor) module).readImprovements(itemStack)
+                        : new ImprovementData[0])
+                .toArray(ImprovementData[][]::new);
+
+        SynergyData[] synergyData = computeSynergyData(itemStack, modules);
+
+        // tweaks are resolved once per module and shared by all stats read from the module
+        TweakSteps[] tweakSteps = modules.stream()
+                .map(module -> module.getTweakSteps(itemStack))
+                .toArray(TweakSteps[]::new);
+
+        int durability = baseDurability;
+        float durabilityMultiplier = 1;
+        int integrityGain = 0;
+        int integrityCost = 0;
+        for (int i = 0; i < modules.size(); i++) {
+            ItemModule module = modules.get(i);
+            durability += module.getDurability(itemStack, tweakSteps[i]);
+            durabilityMultiplier *= module.getDurabilityMultiplier(itemStack, tweakSteps[i]);
+            integrityGain += module.getIntegrityGain(itemStack);
+            integrityCost += module.getIntegrityCost(itemStack);
+        }
+
+        Capability[] capabilityValues = Capability.values();
+        int[] capabilityLevels = new int[capabilityValues.length];
+        float[] capabilityEfficiencies = new float[capabilityValues.length];
+        int[] moduleLevels = new int[modules.size()];
+        float[] moduleEfficiencies = new float[modules.size()];
+        for (Capability capability : capabilityValues) {
+            int highestLevel = -1;
+            for (int i = 0; i < modules.size(); i++) {
+                moduleLevels[i] = modules.get(i).getCapabilityLevel(itemStack, capability);
+                moduleEfficiencies[i] = modules.get(i).getCapabilityEfficiency(itemStack, tweakSteps[i], capability);
+                highestLevel = Math.max(highestLevel, moduleLevels[i]);
+            }
+
+            // grabs the highest efficiency from modules that also provide a capability level (from the module(s) that have the highest capability level
+            // adds the efficiency of all modules that have 0 capability level
+            float highestEfficiency = modules.isEmpty() ? 1 : -Float.MAX_VALUE;
+            float additionalEfficiency = 0;
+            for (int i = 0; i < modules.size(); i++) {
+                if (moduleLevels[i] >= highestLevel) {
+                    highestEfficiency = Math.max(highestEfficiency, moduleEfficiencies[i]);
+                }
+
+                if (moduleLevels[i] == 0) {
+                    additionalEfficiency += moduleEfficiencies[i];
+                }
+            }
+
+            int synergyLevel = 0;
+            float synergyEfficiency = 0;
+            for (SynergyData synergy : synergyData) {
+                synergyLevel += synergy.capabilities.getLevel(capability);
+                synergyEfficiency += synergy.capabilities.getEfficiency(capability);
+            }
+
+            capabilityLevels[capability.ordinal()] = highestLevel + synergyLevel;
+            capabilityEfficiencies[capability.ordinal()] = Math.max(0, highestEfficiency + additionalEfficiency + synergyEfficiency);
+        }
+
+        ImmutableSet<Capability> capabilities = modules.stream()
+                .flatMap(module -> ((Collection<Capability>) module.getCapabilities(itemStack)).stream())
+                .collect(Sets.toImmutableEnumSet());
+
+        ItemEffect[] effectValues = ItemEffect.values();
+        int[] effectLevels = new int[effectValues.length];
+        float[] effectEfficiencies = new float[effectValues.length];
+        for (ItemEffect effect : effectValues) {
+            for (int i = 0; i < modules.size(); i++) {
+                effectLevels[effect.ordinal()] += modules.get(i).getEffectLevel(itemStack, effect);
+                effectEfficiencies[effect.ordinal()] += modules.get(i).getEffectEfficiency(itemStack, tweakSteps[i], effect);
+            }
+        }
+
+        ImmutableSet<ItemEffect> effects = modules.stream()
+                .flatMap(module -> ((Collection<ItemEffect>) module.getEffects(itemStack)).stream())
+                .collect(Sets.toImmutableEnumSet());
+
+        ModularItemStats stats = new ModularItemStats(modules, improvements, synergyData, (int) (durability * durabilityMultiplier),
+                durabilityMultiplier, integrityGain, integrityCost, capabilityLevels, capabilityEfficiencies, capabilities, effectLevels,
+                effectEfficiencies, effects);
+
+        return new ModularItemStats(stats, computeDamageModifier(itemStack, stats, tweakSteps),
+                computeSpeedModifier(itemStack, stats, tweakSteps));
+    }
+
+    /**
+     * Resolves the damage modifier of the given itemstack, called when stats are resolved for the stack. Attack stats are resolved last and
+     * may depend on other stats of the item.
+     * @param itemStack The modular item itemstack
+     * @param stats The stats for the itemstack, excluding attack stats
+     * @param tweakSteps Resolved tweaks for each module, in the same order as the modules of the stats
+     * @return The damage modifier for the itemstack
+     */
+    protected double computeDamageModifier(ItemStack itemStack, ModularItemStats stats, TweakSteps[] tweakSteps) {
+        return 0;
+    }
+
+    /**
+     * Resolves the attack speed modifier of the given itemstack, called when stats are resolved for the stack. Attack stats are resolved last
+     * and may depend on other stats of the item.
+     * @param itemStack The modular item itemstack
+     * @param stats The stats for the itemstack, excluding attack stats
+     * @param tweakSteps Resolved tweaks for each module, in the same order as the modules of the stats
+     * @return The attack speed modifier for the itemstack
+     */
+    protected double computeSpeedModifier(ItemStack itemStack, ModularItemStats stats, TweakSteps[] tweakSteps) {
+        return 0;
     }
 
     @Override
@@ -211,6 +396,29 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
                 .collect(Collectors.collectingAndThen(Collectors.toList(), ImmutableList::copyOf));
     }
 
+    /**
+     * Returns a key identifying the models used to render the given itemstack, itemstacks that render the same have equal keys. Only
+     * data that affects rendering is used to build the key (modules, variants and textured improvements), other changes to the stack
+     * (e.g. damage or progression) do not change the key. Keys are cached along with the stats of the stack and are interned.
+     * @param itemStack The modular item itemstack
+     * @return A key identifying the models of the itemstack
+     */
+    public String getModelKey(ItemStack itemStack) {
+        ModularItemStats stats = getStats(itemStack);
+        try {
+            return modelKeyCache.get(stats, () -> computeModelKey(itemStack, stats));
+        } catch (ExecutionException e) {
+            return computeModelKey(itemStack, stats);
+        }
+    }
+
+    private String computeModelKey(ItemStack itemStack, ModularItemStats stats) {
+        return modelKeyInterner.intern(stats.modules.stream()
+                .sorted(Comparator.comparing(ItemModule::getRenderLayer))
+                .map(module -> module.getModelKey(itemStack))
+                .collect(Collectors.joining(";")));
+    }
+
     public boolean hasModule(ItemStack itemStack, ItemModule module) {
         return getAllModules(itemStack).stream()
             .anyMatch(module::equals);
@@ -240,10 +448,8 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
             return;
         }
 
-        tickHoningProgression(entity, itemStack, multiplier);
-
-        for (ItemModuleMajor module: getMajorModules(itemStack)) {
-            module.tickProgression(entity, itemStack, multiplier);
+        if (!ProgressionTracker.instance.defer(entity, itemStack, multiplier, multiplier)) {
+            applyProgression(entity, itemStack, multiplier, multiplier);
         }
     }
 
@@ -252,7 +458,32 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
             return;
         }
 
-        // todo: store this in a separate data structure?
+        if (!ProgressionTracker.instance.defer(entity, itemStack, multiplier, 0)) {
+            applyHoningProgression(entity, itemStack, multiplier);
+        }
+    }
+
+    /**
+     * Writes progression to the tag of the given itemstack, progression for held items is usually accumulated by the
+     * {@link ProgressionTracker} and applied in batches.
+     * @param entity the entity using the item
+     * @param itemStack the itemstack to progress
+     * @param honing the amount of honing progression
+     * @param settle the amount of settling progression, applied to each major module
+     */
+    public void applyProgression(LivingEntity entity, ItemStack itemStack, int honing, int settle) {
+        if (honing > 0) {
+            applyHoningProgression(entity, itemStack, honing);
+        }
+
+        if (settle > 0) {
+            for (ItemModuleMajor module: getMajorModules(itemStack)) {
+                module.tickProgression(entity, itemStack, settle);
+            }
+        }
+    }
+
+    private void applyHoningProgression(LivingEntity entity, ItemStack itemStack, int multiplier) {
         CompoundNBT tag = NBTHelper.getTag(itemStack);
         if (!isHoneable(itemStack)) {
             int honingProgress;
@@ -273,7 +504,6 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
                 }
             }
         }
-
     }
 
     public int getHoningProgress(ItemStack itemStack) {
@@ -324,11 +554,32 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
     }
 
     public void applyDamage(int amount, ItemStack itemStack, LivingEntity responsibleEntity) {
+        applyDamage(amount, itemStack, getStats(itemStack), responsibleEntity);
+    }
+
+    /**
+     * Applies the same amount of damage to several itemstacks, for effects that hit several entities or break several blocks at once.
+     * Stats are resolved once per stack and the damage negated by unbreaking is sampled once per stack for the whole amount, stacks that
+     * are not modular items are ignored.
+     * @param amount the amount of damage to apply to each stack
+     * @param responsibleEntity the entity using the stacks
+     * @param itemStacks the stacks to damage
+     */
+    public static void applyDamage(int amount, LivingEntity responsibleEntity, ItemStack ... itemStacks) {
+        for (ItemStack itemStack : itemStacks) {
+            if (itemStack.getItem() instanceof ItemModular) {
+                ItemModular item = (ItemModular) itemStack.getItem();
+                item.applyDamage(amount, itemStack, item.getStats(itemStack), responsibleEntity);
+            }
+        }
+    }
+
+    private void applyDamage(int amount, ItemStack itemStack, ModularItemStats stats, LivingEntity responsibleEntity) {
         int damage = itemStack.getDamage();
-        int maxDamage = itemStack.getMaxDamage();
+        int maxDamage = stats.durability;
 
         if (!isBroken(damage, maxDamage)) {
-            int reducedAmount = getReducedDamage(amount, itemStack, responsibleEntity);
+            int reducedAmount = getReducedDamage(amount, stats, responsibleEntity);
             itemStack.damageItem(reducedAmount, responsibleEntity, breaker -> breaker.sendBreakAnimation(breaker.getActiveHand()));
 
             if (isBroken(damage + reducedAmount, maxDamage) && !responsibleEntity.world.isRemote) {
@@ -338,20 +589,15 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
         }
     }
 
-    private int getReducedDamage(int amount, ItemStack itemStack, LivingEntity responsibleEntity) {
+    private int getReducedDamage(int amount, ModularItemStats stats, LivingEntity responsibleEntity) {
         if (amount > 0) {
-            int level = getEffectLevel(itemStack, ItemEffect.unbreaking);
-            int reduction = 0;
+            int level = stats.getEffectLevel(ItemEffect.unbreaking);
 
             if (level > 0) {
-                for (int i = 0; i < amount; i++) {
-                    if (UnbreakingEnchantment.negateDamage(itemStack, level, responsibleEntity.world.rand)) {
-                        reduction++;
-                    }
-                }
+                // same odds as the vanilla unbreaking enchantment, each point of damage is taken with a 1 / (level + 1) chance. The number
+                // of points taken is sampled directly rather than rolling for each point as large amounts can be applied at once
+                return Binomial.sample(responsibleEntity.world.rand, amount, 1d / (level + 1));
             }
-
-            return amount - reduction;
         }
         return amount;
     }
@@ -360,7 +606,7 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
         return isBroken(itemStack.getDamage(), itemStack.getMaxDamage());
     }
 
-    private boolean isBroken(int damage, int maxDamage) {
+    protected boolean isBroken(int damage, int maxDamage) {
         return maxDamage != 0 && damage >= maxDamage - 1;
     }
 
@@ -580,10 +826,7 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
                 .filter(Objects::nonNull)
                 .flatMap(module -> Arrays.stream(module.getImprovements(itemStack)))
                 .mapToInt(improvement ->
-                        (int) (Math.max(1, improvement.level) * Arrays.stream(ItemUpgradeRegistry.instance.getEnchantmentMappings(improvement.key))
-                        .filter(mapping -> enchantment.equals(mapping.enchantment))
-                        .map(mapping -> mapping.multiplier)
-                        .reduce(0f, Float::sum))
+                        (int) (Math.max(1, improvement.level) * ItemUpgradeRegistry.instance.getEnchantmentMultiplier(improvement.key, enchantment))
                     )
                 .sum();
     }
@@ -593,10 +836,7 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
                 .map(module -> Arrays.stream(module.getImprovements(itemStack)))
                 .orElseGet(Stream::empty)
                 .mapToInt(improvement ->
-                        (int) (Math.max(1, improvement.level) * Arrays.stream(ItemUpgradeRegistry.instance.getEnchantmentMappings(improvement.key))
-                        .filter(mapping -> enchantment.equals(mapping.enchantment))
-                        .map(mapping -> mapping.multiplier)
-                        .reduce(0f, Float::sum))
+                        (int) (Math.max(1, improvement.level) * ItemUpgradeRegistry.instance.getEnchantmentMultiplier(improvement.key, enchantment))
                 )
                 .sum();
     }
@@ -607,10 +847,7 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
                 .orElseGet(Stream::empty)
                 .filter(improvement -> improvementKey.equals(improvement.key))
                 .mapToInt(improvement ->
-                        (int) (Math.max(1, improvement.level) * Arrays.stream(ItemUpgradeRegistry.instance.getEnchantmentMappings(improvement.key))
-                                .filter(mapping -> enchantment.equals(mapping.enchantment))
-                                .map(mapping -> mapping.multiplier)
-                                .reduce(0f, Float::sum))
+                        (int) (Math.max(1, improvement.level) * ItemUpgradeRegistry.instance.getEnchantmentMultiplier(improvement.key, enchantment))
                 )
                 .sum();
     }
@@ -669,8 +906,9 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
     }
 
     public int getCapabilityLevel(ItemStack itemStack, ToolType toolType) {
-        if (toolType != null) {
-            return getCapabilityLevel(itemStack, toolType.getName());
+        Capability capability = Capability.fromToolType(toolType);
+        if (capability != null) {
+            return getCapabilityLevel(itemStack, capability);
         }
         return -1;
     }
@@ -688,22 +926,13 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
             return -1;
         }
 
-        int base = getAllModules(itemStack).stream()
-                .map(module -> module.getCapabilityLevel(itemStack, capability))
-                .max(Integer::compare)
-                .orElse(-1);
-
-        int synergyBonus = Arrays.stream(getSynergyData(itemStack))
-                .map(synergyData -> synergyData.capabilities)
-                .mapToInt(capabilityData -> capabilityData.getLevel(capability))
-                .sum();
-
-        return base + synergyBonus;
+        return getStats(itemStack).getCapabilityLevel(capability);
     }
 
     public float getCapabilityEfficiency(ItemStack itemStack, ToolType toolType) {
-        if (toolType != null) {
-            return getCapabilityEfficiency(itemStack, toolType.getName());
+        Capability capability = Capability.fromToolType(toolType);
+        if (capability != null) {
+            return getCapabilityEfficiency(itemStack, capability);
         }
         return -1;
     }
@@ -721,27 +950,7 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
             return 0;
         }
 
-        int highestLevel = getAllModules(itemStack).stream()
-                .map(module -> module.getCapabilityLevel(itemStack, capability))
-                .max(Integer::compare)
-                .orElse(-1);
-
-        // grabs the highest efficiency from modules that also provide a capability level (from the module(s) that have the highest capability level
-        // adds the efficiency of all modules that have 0 capability level
-        float efficiency = getAllModules(itemStack).stream()
-                .filter(module -> module.getCapabilityLevel(itemStack, capability) >= highestLevel)
-                .map(module -> module.getCapabilityEfficiency(itemStack, capability))
-                .max(Float::compare)
-                .orElse(1f)
-                + (float) getAllModules(itemStack).stream()
-                .filter(module -> module.getCapabilityLevel(itemStack, capability) == 0)
-                .mapToDouble(module -> module.getCapabilityEfficiency(itemStack, capability))
-                .sum();
-
-        return Math.max(0, efficiency + (float) Arrays.stream(getSynergyData(itemStack))
-                .map(synergyData -> synergyData.capabilities)
-                .mapToDouble(capabilityData -> capabilityData.getEfficiency(capability))
-                .sum());
+        return getStats(itemStack).getCapabilityEfficiency(capability);
     }
 
     @Override
@@ -750,9 +959,23 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
             return Collections.emptyList();
         }
 
-        return getAllModules(itemStack).stream()
-                .flatMap(module -> ((Collection<Capability>)module.getCapabilities(itemStack)).stream())
-                .collect(Collectors.toSet());
+        return getStats(itemStack).capabilities;
+    }
+
+    /**
+     * Get the stats used to resolve capabilities for the given itemstack, or null if the item is broken and provides no capabilities.
+     * Levels and efficiencies for all capabilities are resolved together in a single pass over the modules of the item, prefer this
+     * over separate level and efficiency queries when several values are needed, e.g. in mining paths that run every tick.
+     * @param itemStack An itemstack for this item
+     * @return The stats of the itemstack, or null if it's broken
+     */
+    @Nullable
+    public ModularItemStats getCapabilityStats(ItemStack itemStack) {
+        ModularItemStats stats = getStats(itemStack);
+        if (isBroken(itemStack.getDamage(), stats.durability)) {
+            return null;
+        }
+        return stats;
     }
 
     /**
@@ -794,9 +1017,7 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
             return -1;
         }
 
-        return getAllModules(itemStack).stream()
-                .mapToInt(module -> module.getEffectLevel(itemStack, effect))
-                .sum();
+        return getStats(itemStack).getEffectLevel(effect);
     }
 
     public double getEffectEfficiency(ItemStack itemStack, ItemEffect effect) {
@@ -804,9 +1025,7 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
             return 0;
         }
 
-        return getAllModules(itemStack).stream()
-                .mapToDouble(module -> module.getEffectEfficiency(itemStack, effect))
-                .sum();
+        return getStats(itemStack).getEffectEfficiency(effect);
     }
 
     public Collection<ItemEffect> getEffects(ItemStack itemStack) {
@@ -814,11 +1033,7 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
             return Collections.emptyList();
         }
 
-        return getAllModules(itemStack).stream()
-                .flatMap(module -> ((Collection<ItemEffect>)module.getEffects(itemStack)).stream())
-                .distinct()
-                .collect(Collectors.toSet());
-
+        return getStats(itemStack).effects;
     }
 
     @Override
@@ -886,48 +1101,21 @@ public abstract class ItemModular extends TetraItem implements IItemModular, ICa
     }
 
     public SynergyData[] getSynergyData(ItemStack itemStack) {
-        if (synergies.length > 0) {
-            ArrayList<SynergyData> result = new ArrayList<>();
-            String[] moduleKeys = getAllModules(itemStack).stream()
-                    .map(ItemModule::getUnlocalizedName)
-                    .sorted()
-                    .toArray(String[]::new);
-            String[] variantKeys = getAllModules(itemStack).stream()
-                    .map(module -> module.getVariantData(itemStack))
-                    .map(data -> data.key)
-                    .sorted()
-                    .toArray(String[]::new);
-
-            for (SynergyData synergy : synergies) {
-                int variantMatches = 0;
-                int moduleMatches = 0;
-                for (String variantKey : variantKeys) {
-                    if (variantMatches == synergy.moduleVariants.length) {
-                        break;
-                    }
-
-                    if (variantKey.equals(synergy.moduleVariants[variantMatches])) {
-                        variantMatches++;
-                    }
-                }
-
-                for (String moduleKey : moduleKeys) {
-                    if (moduleMatches == synergy.modules.length) {
-                        break;
-                    }
+        return getStats(itemStack).getSynergies();
+    }
 
-                    if (moduleKey.equals(synergy.modules[moduleMatches])) {
-                        moduleMatches++;
-                    }
-                }
+    protected SynergyData[] computeSynergyData(ItemStack itemStack, Collection<ItemModule> modules) {
+        return synergyMatcher.match(itemStack, modules);
+    }
 
-                if (synergy.moduleVariants.length > 0 && variantMatches == synergy.moduleVariants.length
-                        || synergy.modules.length > 0 && moduleMatches == synergy.modules.length) {
-                    result.add(synergy);
-                }
-            }
-            return result.toArray(new SynergyData[result.size()]);
-        }
-        return new SynergyData[0];
+    /**
+     * Sets the synergies available for this item and compiles them for matching, cached stats are invalidated as they may contain
+     * synergies that no longer apply.
+     * @param synergies All synergies available for this item
+     */
+    protected void setSynergies(SynergyData[] synergies) {
+        this.synergies = synergies;
+        synergyMatcher = new SynergyMatcher(synergies);
+        clearStatsCache();
     }
 }
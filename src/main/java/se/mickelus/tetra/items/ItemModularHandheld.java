@@ -1,11 +1,12 @@
 package se.mickelus.tetra.items;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.*;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.block.RotatedPillarBlock;
-import net.minecraft.block.material.Material;
 import net.minecraft.enchantment.EnchantmentHelper;
 import net.minecraft.enchantment.Enchantments;
 import net.minecraft.entity.*;
@@ -23,8 +24,6 @@ import net.minecraft.particles.BlockParticleData;
 import net.minecraft.particles.ParticleTypes;
 import net.minecraft.potion.EffectInstance;
 import net.minecraft.potion.Effects;
-import net.minecraft.tags.BlockTags;
-import net.minecraft.tags.Tag;
 import net.minecraft.util.*;
 import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
@@ -38,50 +37,24 @@ import net.minecraftforge.eventbus.api.Event;
 import se.mickelus.tetra.BleedingEffect;
 import se.mickelus.tetra.EarthboundEffect;
 import se.mickelus.tetra.NBTHelper;
+import se.mickelus.tetra.ToolClassification;
 import se.mickelus.tetra.ToolTypes;
 import se.mickelus.tetra.capabilities.Capability;
 import se.mickelus.tetra.module.ItemEffect;
 import se.mickelus.tetra.module.ItemEffectHandler;
+import se.mickelus.tetra.module.data.TweakSteps;
 import se.mickelus.tetra.util.CastOptional;
 
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 public class ItemModularHandheld extends ItemModular {
 
-    /**
-     * Below are lists of blocks, materials and tags that describe what different tools can harvest and efficiently destroy. Note that these
-     * are copies of what the vanilla tool counterparts explicitly state that they can destroy and harvest, some blocks (and required tiers)
-     * are not listed here as that's part of that block's implementation.
-     */
-
-    // copy of AxeItem.EFFECTIVE_ON, blocks that the axe explicitly state it can efficiently DESTROY
-    private static final Set<Block> axeDestroyBlocks = Sets.newHashSet(Blocks.OAK_PLANKS, Blocks.SPRUCE_PLANKS, Blocks.BIRCH_PLANKS, Blocks.JUNGLE_PLANKS, Blocks.ACACIA_PLANKS, Blocks.DARK_OAK_PLANKS, Blocks.BOOKSHELF, Blocks.OAK_WOOD, Blocks.SPRUCE_WOOD, Blocks.BIRCH_WOOD, Blocks.JUNGLE_WOOD, Blocks.ACACIA_WOOD, Blocks.DARK_OAK_WOOD, Blocks.OAK_LOG, Blocks.SPRUCE_LOG, Blocks.BIRCH_LOG, Blocks.JUNGLE_LOG, Blocks.ACACIA_LOG, Blocks.DARK_OAK_LOG, Blocks.CHEST, Blocks.PUMPKIN, Blocks.CARVED_PUMPKIN, Blocks.JACK_O_LANTERN, Blocks.MELON, Blocks.LADDER, Blocks.SCAFFOLDING, Blocks.OAK_BUTTON, Blocks.SPRUCE_BUTTON, Blocks.BIRCH_BUTTON, Blocks.JUNGLE_BUTTON, Blocks.DARK_OAK_BUTTON, Blocks.ACACIA_BUTTON, Blocks.OAK_PRESSURE_PLATE, Blocks.SPRUCE_PRESSURE_PLATE, Blocks.BIRCH_PRESSURE_PLATE, Blocks.JUNGLE_PRESSURE_PLATE, Blocks.DARK_OAK_PRESSURE_PLATE, Blocks.ACACIA_PRESSURE_PLATE);
-
-    // copy of hardcoded values in AxeItem, materials that the axe explicitly state it can efficiently HARVEST
-    private static final Set<Material> axeHarvestMaterials = Sets.newHashSet(Material.WOOD, Material.PLANTS, Material.TALL_PLANTS, Material.BAMBOO);
-
-    // copy of PickaxeItem.EFFECTIVE_ON, blocks that the pickaxe explicitly state it can efficiently DESTROY
-    private static final Set<Block> pickaxeDestroyBlocks = Sets.newHashSet(Blocks.ACTIVATOR_RAIL, Blocks.COAL_ORE, Blocks.COBBLESTONE, Blocks.DETECTOR_RAIL, Blocks.DIAMOND_BLOCK, Blocks.DIAMOND_ORE, Blocks.POWERED_RAIL, Blocks.GOLD_BLOCK, Blocks.GOLD_ORE, Blocks.ICE, Blocks.IRON_BLOCK, Blocks.IRON_ORE, Blocks.LAPIS_BLOCK, Blocks.LAPIS_ORE, Blocks.MOSSY_COBBLESTONE, Blocks.NETHERRACK, Blocks.PACKED_ICE, Blocks.BLUE_ICE, Blocks.RAIL, Blocks.REDSTONE_ORE, Blocks.SANDSTONE, Blocks.CHISELED_SANDSTONE, Blocks.CUT_SANDSTONE, Blocks.CHISELED_RED_SANDSTONE, Blocks.CUT_RED_SANDSTONE, Blocks.RED_SANDSTONE, Blocks.STONE, Blocks.GRANITE, Blocks.POLISHED_GRANITE, Blocks.DIORITE, Blocks.POLISHED_DIORITE, Blocks.ANDESITE, Blocks.POLISHED_ANDESITE, Blocks.STONE_SLAB, Blocks.SMOOTH_STONE_SLAB, Blocks.SANDSTONE_SLAB, Blocks.PETRIFIED_OAK_SLAB, Blocks.COBBLESTONE_SLAB, Blocks.BRICK_SLAB, Blocks.STONE_BRICK_SLAB, Blocks.NETHER_BRICK_SLAB, Blocks.QUARTZ_SLAB, Blocks.RED_SANDSTONE_SLAB, Blocks.PURPUR_SLAB, Blocks.SMOOTH_QUARTZ, Blocks.SMOOTH_RED_SANDSTONE, Blocks.SMOOTH_SANDSTONE, Blocks.SMOOTH_STONE, Blocks.STONE_BUTTON, Blocks.STONE_PRESSURE_PLATE, Blocks.POLISHED_GRANITE_SLAB, Blocks.SMOOTH_RED_SANDSTONE_SLAB, Blocks.MOSSY_STONE_BRICK_SLAB, Blocks.POLISHED_DIORITE_SLAB, Blocks.MOSSY_COBBLESTONE_SLAB, Blocks.END_STONE_BRICK_SLAB, Blocks.SMOOTH_SANDSTONE_SLAB, Blocks.SMOOTH_QUARTZ_SLAB, Blocks.GRANITE_SLAB, Blocks.ANDESITE_SLAB, Blocks.RED_NETHER_BRICK_SLAB, Blocks.POLISHED_ANDESITE_SLAB, Blocks.DIORITE_SLAB, Blocks.SHULKER_BOX, Blocks.BLACK_SHULKER_BOX, Blocks.BLUE_SHULKER_BOX, Blocks.BROWN_SHULKER_BOX, Blocks.CYAN_SHULKER_BOX, Blocks.GRAY_SHULKER_BOX, Blocks.GREEN_SHULKER_BOX, Blocks.LIGHT_BLUE_SHULKER_BOX, Blocks.LIGHT_GRAY_SHULKER_BOX, Blocks.LIME_SHULKER_BOX, Blocks.MAGENTA_SHULKER_BOX, Blocks.ORANGE_SHULKER_BOX, Blocks.PINK_SHULKER_BOX, Blocks.PURPLE_SHULKER_BOX, Blocks.RED_SHULKER_BOX, Blocks.WHITE_SHULKER_BOX, Blocks.YELLOW_SHULKER_BOX);
-
-    // copy of hardcoded values in PickaxeItem, materials that the pickaxe explicitly state it can efficiently HARVEST
-    private static final Set<Material> pickaxeHarvestMaterials = Sets.newHashSet(Material.IRON, Material.ANVIL, Material.ROCK);
-
-    // copy of ShovelItem.EFFECTIVE_ON, blocks that the shovel explicitly state it can efficiently DESTROY
-    private static final Set<Block> shovelDestroyBlocks = Sets.newHashSet(Blocks.CLAY, Blocks.DIRT, Blocks.COARSE_DIRT, Blocks.PODZOL, Blocks.FARMLAND, Blocks.GRASS_BLOCK, Blocks.GRAVEL, Blocks.MYCELIUM, Blocks.SAND, Blocks.RED_SAND, Blocks.SNOW_BLOCK, Blocks.SNOW, Blocks.SOUL_SAND, Blocks.GRASS_PATH, Blocks.WHITE_CONCRETE_POWDER, Blocks.ORANGE_CONCRETE_POWDER, Blocks.MAGENTA_CONCRETE_POWDER, Blocks.LIGHT_BLUE_CONCRETE_POWDER, Blocks.YELLOW_CONCRETE_POWDER, Blocks.LIME_CONCRETE_POWDER, Blocks.PINK_CONCRETE_POWDER, Blocks.GRAY_CONCRETE_POWDER, Blocks.LIGHT_GRAY_CONCRETE_POWDER, Blocks.CYAN_CONCRETE_POWDER, Blocks.PURPLE_CONCRETE_POWDER, Blocks.BLUE_CONCRETE_POWDER, Blocks.BROWN_CONCRETE_POWDER, Blocks.GREEN_CONCRETE_POWDER, Blocks.RED_CONCRETE_POWDER, Blocks.BLACK_CONCRETE_POWDER);
-
-    // copy of hardcoded values in ShovelItem, blocks that the shovel explicitly state it can efficiently HARVEST
-    private static final Set<Block> shovelHarvestBlocks = Sets.newHashSet(Blocks.SNOW, Blocks.SNOW_BLOCK);
-
-    // copy of hardcoded values in SwordItem, materials & tag that it explicitly state it can efficiently DESTROY
-    private static final Set<Material> cuttingDestroyMaterials = Sets.newHashSet(Material.PLANTS, Material.TALL_PLANTS, Material.CORAL, Material.GOURD, Material.WEB);
-    private static final Set<Tag<Block>> cuttingDestroyTags = Sets.newHashSet(BlockTags.LEAVES);
-
-    // copy of hardcoded values in SwordItem, blocks that the sword explicitly state it can efficiently HARVEST
-    private static final Set<Block> cuttingHarvestBlocks = Sets.newHashSet(Blocks.COBWEB);
-
     private static final ResourceLocation nailedTag = new ResourceLocation("tetra:nailed");
 
     protected static final Map<Block, BlockState> tillLookup = Maps.newHashMap(ImmutableMap.of(
@@ -118,6 +91,13 @@ public class ItemModularHandheld extends ItemModular {
     // the base amount of damage the item should take after hitting an entity
     protected int entityHitDamage = 1;
 
+    // attribute modifiers for all equipment slots, keyed by the stats snapshot they were built from. Snapshots are replaced when the
+    // module setup of a stack changes, the identity of the snapshot can therefore be used to key modifiers on the state of the stack
+    private final Cache<ModularItemStats, Map<EquipmentSlotType, Multimap<String, AttributeModifier>>> attributeModifierCache =
+            CacheBuilder.newBuilder()
+                    .weakKeys()
+                    .build();
+
     public ItemModularHandheld(Properties properties) {
         super(properties);
     }
@@ -540,27 +520,52 @@ public class ItemModularHandheld extends ItemModular {
         return NBTHelper.getTag(itemStack).getFloat(cooledStrengthKey);
     }
 
+    /**
+     * Attribute modifiers are built once per stats snapshot for all slots and cached, as this is called whenever the equipment of an
+     * entity changes (e.g. for every scroll through the hotbar) and on every tooltip render. Modifiers for broken items are not cached as
+     * they only depend on the attack speed of the item. Callers get a mutable copy of the cached modifiers, as vanilla callers and other
+     * mods expect to be able to modify the returned multimap.
+     */
     @Override
     public Multimap<String, AttributeModifier> getAttributeModifiers(EquipmentSlotType slot, ItemStack itemStack) {
-        Multimap<String, AttributeModifier> multimap = super.getAttributeModifiers(slot, itemStack);
+        ModularItemStats stats = getStats(itemStack);
+
+        if (isBroken(itemStack.getDamage(), stats.durability)) {
+            return HashMultimap.create(getAttributeModifiers(slot, itemStack, 0, stats.attackSpeed, 0));
+        }
+
+        try {
+            return HashMultimap.create(attributeModifierCache.get(stats, () -> Arrays.stream(EquipmentSlotType.values())
+                    .collect(Maps.toImmutableEnumMap(Function.identity(), equipmentSlot -> getAttributeModifiers(equipmentSlot, itemStack,
+                            stats.damage, stats.attackSpeed, stats.getEffectLevel(ItemEffect.armor)))))
+                    .get(slot));
+        } catch (ExecutionException e) {
+            return HashMultimap.create(getAttributeModifiers(slot, itemStack, stats.damage, stats.attackSpeed,
+                    stats.getEffectLevel(ItemEffect.armor)));
+        }
+    }
+
+    private Multimap<String, AttributeModifier> getAttributeModifiers(EquipmentSlotType slot, ItemStack itemStack, double damage,
+            double speed, int armor) {
+        ImmutableMultimap.Builder<String, AttributeModifier> builder = ImmutableMultimap.builder();
+        builder.putAll(super.getAttributeModifiers(slot, itemStack));
 
         if (slot == EquipmentSlotType.MAINHAND) {
-            multimap.put(SharedMonsterAttributes.ATTACK_DAMAGE.getName(), new AttributeModifier(ATTACK_DAMAGE_MODIFIER,
-                    "Weapon modifier", getDamageModifier(itemStack), AttributeModifier.Operation.ADDITION));
+            builder.put(SharedMonsterAttributes.ATTACK_DAMAGE.getName(), new AttributeModifier(ATTACK_DAMAGE_MODIFIER,
+                    "Weapon modifier", damage, AttributeModifier.Operation.ADDITION));
 
-            multimap.put(SharedMonsterAttributes.ATTACK_SPEED.getName(), new AttributeModifier(ATTACK_SPEED_MODIFIER,
-                    "Weapon modifier", getSpeedModifier(itemStack), AttributeModifier.Operation.ADDITION));
+            builder.put(SharedMonsterAttributes.ATTACK_SPEED.getName(), new AttributeModifier(ATTACK_SPEED_MODIFIER,
+                    "Weapon modifier", speed, AttributeModifier.Operation.ADDITION));
         }
 
         if (slot == EquipmentSlotType.MAINHAND || slot == EquipmentSlotType.OFFHAND) {
-            int armor = getEffectLevel(itemStack, ItemEffect.armor);
             if  (armor > 0) {
-                multimap.put(SharedMonsterAttributes.ARMOR.getName(), new AttributeModifier(ARMOR_MODIFIER,
+                builder.put(SharedMonsterAttributes.ARMOR.getName(), new AttributeModifier(ARMOR_MODIFIER,
                         "Weapon modifier", armor, AttributeModifier.Operation.ADDITION));
             }
         }
 
-        return multimap;
+        return builder.build();
     }
 
     public double getDamageModifier(ItemStack itemStack) {
@@ -568,20 +573,25 @@ public class ItemModularHandheld extends ItemModular {
             return 0;
         }
 
-        double damageModifier = getAllModules(itemStack).stream()
-                .mapToDouble(itemModule -> itemModule.getDamageModifier(itemStack))
+        return getStats(itemStack).damage;
+    }
+
+    @Override
+    protected double computeDamageModifier(ItemStack itemStack, ModularItemStats stats, TweakSteps[] tweakSteps) {
+        double damageModifier = IntStream.range(0, stats.modules.size())
+                .mapToDouble(i -> stats.modules.get(i).getDamageModifier(itemStack, tweakSteps[i]))
                 .sum();
 
-        damageModifier = Arrays.stream(getSynergyData(itemStack))
+        damageModifier = Arrays.stream(stats.getSynergies())
                 .mapToDouble(synergyData -> synergyData.damage)
                 .reduce(damageModifier, Double::sum);
 
-        damageModifier = Arrays.stream(getSynergyData(itemStack))
+        damageModifier = Arrays.stream(stats.getSynergies())
                 .mapToDouble(synergyData -> synergyData.damageMultiplier)
                 .reduce(damageModifier, (a, b) -> a * b);
 
-        return getAllModules(itemStack).stream()
-                .map(itemModule -> itemModule.getDamageMultiplierModifier(itemStack))
+        return IntStream.range(0, stats.modules.size())
+                .mapToObj(i -> stats.modules.get(i).getDamageMultiplierModifier(itemStack, tweakSteps[i]))
                 .reduce(damageModifier, (a, b) -> a * b);
     }
 
@@ -593,23 +603,28 @@ public class ItemModularHandheld extends ItemModular {
     }
 
     public double getSpeedModifier(ItemStack itemStack) {
-        double speedModifier = getAllModules(itemStack).stream()
-                .map(itemModule -> itemModule.getSpeedModifier(itemStack))
+        return getStats(itemStack).attackSpeed;
+    }
+
+    @Override
+    protected double computeSpeedModifier(ItemStack itemStack, ModularItemStats stats, TweakSteps[] tweakSteps) {
+        double speedModifier = IntStream.range(0, stats.modules.size())
+                .mapToObj(i -> stats.modules.get(i).getSpeedModifier(itemStack, tweakSteps[i]))
                 .reduce(-2.4d, Double::sum);
 
-        speedModifier = Arrays.stream(getSynergyData(itemStack))
+        speedModifier = Arrays.stream(stats.getSynergies())
                 .mapToDouble(synergyData -> synergyData.attackSpeed)
                 .reduce(speedModifier, Double::sum);
 
-        speedModifier = Arrays.stream(getSynergyData(itemStack))
+        speedModifier = Arrays.stream(stats.getSynergies())
                 .mapToDouble(synergyData -> synergyData.attackSpeedMultiplier)
                 .reduce(speedModifier, (a, b) -> a * b);
 
-        speedModifier = getAllModules(itemStack).stream()
-                .map(itemModule -> itemModule.getSpeedMultiplierModifier(itemStack))
+        speedModifier = IntStream.range(0, stats.modules.size())
+                .mapToObj(i -> stats.modules.get(i).getSpeedMultiplierModifier(itemStack, tweakSteps[i]))
                 .reduce(speedModifier, (a, b) -> a * b);
 
-        speedModifier *= getCounterWeightMultiplier(itemStack);
+        speedModifier *= getCounterWeightMultiplier(stats.getEffectLevel(ItemEffect.counterweight), stats.integrityCost);
 
         if (speedModifier < -4) {
             speedModifier = -3.9d;
@@ -619,10 +634,11 @@ public class ItemModularHandheld extends ItemModular {
     }
 
     public double getCounterWeightMultiplier(ItemStack itemStack) {
-        int counterWeightLevel = getEffectLevel(itemStack, ItemEffect.counterweight);
-        if (counterWeightLevel > 0) {
-            int integrityCost = getIntegrityCost(itemStack);
+        return getCounterWeightMultiplier(getEffectLevel(itemStack, ItemEffect.counterweight), getIntegrityCost(itemStack));
+    }
 
+    private double getCounterWeightMultiplier(int counterWeightLevel, int integrityCost) {
+        if (counterWeightLevel > 0) {
             return 0.5 + Math.abs(counterWeightLevel + integrityCost) * 0.2;
         }
         return 1;
@@ -639,8 +655,7 @@ public class ItemModularHandheld extends ItemModular {
     public Set<ToolType> getToolTypes(ItemStack stack) {
         if (!isBroken(stack)) {
             return getCapabilities(stack).stream()
-                    .map(Enum::toString)
-                    .map(ToolType::get)
+                    .map(Capability::getToolType)
                     .collect(Collectors.toSet());
         }
         return Collections.emptySet();
@@ -648,9 +663,17 @@ public class ItemModularHandheld extends ItemModular {
 
     @Override
     public int getHarvestLevel(ItemStack stack, ToolType tool, @Nullable PlayerEntity player, @Nullable BlockState blockState) {
-        if (!isBroken(stack)) {
+        return getHarvestLevel(getCapabilityStats(stack), tool);
+    }
+
+    /**
+     * Resolves the harvest level for the given tool from already resolved stats, null stats are treated as a broken item.
+     */
+    private int getHarvestLevel(@Nullable ModularItemStats stats, ToolType tool) {
+        Capability capability = Capability.fromToolType(tool);
+        if (stats != null && capability != null) {
             // todo: change tool capabilities to be zero indexed to align with vanilla
-            int capabilityLevel = getCapabilityLevel(stack, tool);
+            int capabilityLevel = stats.getCapabilityLevel(capability);
             if (capabilityLevel > 0) {
                 return capabilityLevel - 1;
             }
@@ -660,37 +683,36 @@ public class ItemModularHandheld extends ItemModular {
 
     @Override
     public boolean canHarvestBlock(ItemStack stack, BlockState state) {
-        if (getHarvestLevel(stack, state.getHarvestTool(), null, state) >= state.getHarvestLevel()) {
+        ModularItemStats stats = getCapabilityStats(stack);
+        if (getHarvestLevel(stats, state.getHarvestTool()) >= state.getHarvestLevel()) {
             return true;
-        } else {
-            if (pickaxeHarvestMaterials.contains(state.getMaterial())) {
-                return getHarvestLevel(stack, ToolType.PICKAXE, null, null) >= 0;
-            } else if (axeHarvestMaterials.contains(state.getMaterial())) {
-                return getHarvestLevel(stack, ToolType.AXE, null, null) >= 0;
-            } else if (shovelHarvestBlocks.contains(state.getBlock())) {
-                return getHarvestLevel(stack, ToolType.SHOVEL, null, null) >= 0;
-            } else if (cuttingHarvestBlocks.contains(state.getBlock())) {
-                return getHarvestLevel(stack, ToolTypes.cut, null, null) >= 0;
-            }
         }
 
-        return false;
+        ToolType harvestingTool = ToolClassification.getHarvestingTool(state);
+        return harvestingTool != null && getHarvestLevel(stats, harvestingTool) >= 0;
     }
 
     @Override
     public float getDestroySpeed(ItemStack itemStack, BlockState blockState) {
-        if (!isBroken(itemStack)) {
+        ModularItemStats stats = getCapabilityStats(itemStack);
+        if (stats != null) {
             ToolType tool = getEffectiveTool(blockState);
-            float speed = (float) (4 + getSpeedModifier(itemStack));
+            float speed = (float) (4 + stats.attackSpeed);
 
             if (tool != null) {
-                speed *= getCapabilityEfficiency(itemStack, tool);
+                Capability capability = Capability.fromToolType(tool);
+                speed *= capability != null ? stats.getCapabilityEfficiency(capability) : -1;
             } else {
-                speed *= getToolTypes(itemStack).stream()
-                        .filter(blockState::isToolEffective)
-                        .map(toolType -> getCapabilityEfficiency(itemStack, toolType))
-                        .max(Comparator.naturalOrder())
-                        .orElse(0f);
+                float efficiency = 0;
+                boolean found = false;
+                for (Capability capability : stats.capabilities) {
+                    if (blockState.isToolEffective(capability.getToolType())) {
+                        efficiency = found ? Math.max(efficiency, stats.getCapabilityEfficiency(capability))
+                                : stats.getCapabilityEfficiency(capability);
+                        found = true;
+                    }
+                }
+                speed *= efficiency;
             }
 
             // todo: need a better way to handle how swords break cobwebs faster
@@ -706,59 +728,18 @@ public class ItemModularHandheld extends ItemModular {
         return 1;
     }
 
+    /**
+     * @see ToolClassification#isToolEffective(ToolType, BlockState)
+     */
     public static boolean isToolEffective(ToolType toolType, BlockState blockState) {
-        if (axeHarvestMaterials.contains(blockState.getMaterial()) && ToolType.AXE.equals(toolType)) {
-            return true;
-        } else if (pickaxeHarvestMaterials.contains(blockState.getMaterial()) && ToolType.PICKAXE.equals(toolType)) {
-            return true;
-        } else if (cuttingHarvestBlocks.contains(blockState.getBlock()) && ToolTypes.cut.equals(toolType)) {
-            return true;
-        } else if (shovelHarvestBlocks.contains(blockState.getBlock()) && ToolType.SHOVEL.equals(toolType)) {
-            return true;
-        }
-
-        if (axeDestroyBlocks.contains(blockState.getBlock()) && ToolType.AXE.equals(toolType)) {
-            return true;
-        } else if (pickaxeDestroyBlocks.contains(blockState.getBlock()) && ToolType.PICKAXE.equals(toolType)) {
-            return true;
-        } else if (cuttingDestroyMaterials.contains(blockState.getMaterial())
-                || cuttingDestroyTags.stream().anyMatch(tag -> blockState.getBlock().isIn(tag)) && ToolTypes.cut.equals(toolType)) {
-            return true;
-        } else if (shovelDestroyBlocks.contains(blockState.getBlock()) && ToolType.SHOVEL.equals(toolType)) {
-            return true;
-        }
-
-        return toolType.equals(blockState.getHarvestTool());
+        return ToolClassification.isToolEffective(toolType, blockState);
     }
 
+    /**
+     * @see ToolClassification#getEffectiveTool(BlockState)
+     */
     public static ToolType getEffectiveTool(BlockState blockState) {
-        ToolType tool = blockState.getHarvestTool();
-
-        if (tool != null) {
-            return tool;
-        }
-
-        if (axeHarvestMaterials.contains(blockState.getMaterial())) {
-            return ToolType.AXE;
-        } else if (pickaxeHarvestMaterials.contains(blockState.getMaterial())) {
-            return ToolType.PICKAXE;
-        } else if (cuttingHarvestBlocks.contains(blockState.getBlock())) {
-            return ToolTypes.cut;
-        } else if (shovelHarvestBlocks.contains(blockState.getBlock())) {
-            return ToolType.SHOVEL;
-        }
-
-        if (axeDestroyBlocks.contains(blockState.getBlock())) {
-            return ToolType.AXE;
-        } else if (pickaxeDestroyBlocks.contains(blockState.getBlock())) {
-            return ToolType.PICKAXE;
-        } else if (cuttingDestroyMaterials.contains(blockState.getMaterial())
-                || cuttingDestroyTags.stream().anyMatch(tag -> blockState.getBlock().isIn(tag))) {
-            return ToolTypes.cut;
-        } else if (shovelDestroyBlocks.contains(blockState.getBlock())) {
-            return ToolType.SHOVEL;
-        }
-        return null;
+        return ToolClassification.getEffectiveTool(blockState);
     }
 
     @Override
@@ -0,0 +1,228 @@
+package se.mickelus.tetra.items;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.INBT;
+import se.mickelus.tetra.capabilities.Capability;
+import se.mickelus.tetra.module.ItemEffect;
+import se.mickelus.tetra.module.ItemModule;
+import se.mickelus.tetra.module.data.ImprovementData;
+import se.mickelus.tetra.module.data.SynergyData;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * An immutable snapshot of the stats resolved from the modules, improvements, tweaks and synergies of a modular itemstack. Snapshots are
+ * created and cached by {@link ItemModular#getStats(net.minecraft.item.ItemStack)}, modular stat getters should read from the snapshot
+ * rather than resolving modules from the stack tag on every call.
+ */
+public class ModularItemStats {
+
+    public static final ModularItemStats empty = new ModularItemStats(ImmutableList.of(), new ImprovementData[0][], new SynergyData[0],
+            0, 1, 0, 0, new int[Capability.values().length], new float[Capability.values().length], ImmutableSet.of(),
+            new int[ItemEffect.values().length], new float[ItemEffect.values().length], ImmutableSet.of());
+
+    /**
+     * All modules present on the item, major modules first followed by minor modules.
+     */
+    public final ImmutableList<ItemModule> modules;
+
+    // improvements present on each module, in the same order as the modules
+    private final ImprovementData[][] improvements;
+
+    private final SynergyData[] synergies;
+
+    /**
+     * The max damage of the item, the sum of all module durabilities and the base durability of the item multiplied by the durability
+     * multiplier.
+     */
+    public final int durability;
+    public final float durabilityMultiplier;
+
+    public final int integrityGain;
+    public final int integrityCost;
+
+    public final double damage;
+    public final double attackSpeed;
+
+    private final int[] capabilityLevels;
+    private final float[] capabilityEfficiencies;
+    public final ImmutableSet<Capability> capabilities;
+
+    private final int[] effectLevels;
+    private final float[] effectEfficiencies;
+    public final ImmutableSet<ItemEffect> effects;
+    private final long effectMask;
+
+    public ModularItemStats(ImmutableList<ItemModule> modules, ImprovementData[][] improvements, SynergyData[] synergies, int durability,
+            float durabilityMultiplier, int integrityGain, int integrityCost, int[] capabilityLevels, float[] capabilityEfficiencies,
+            ImmutableSet<Capability> capabilities, int[] effectLevels, float[] effectEfficiencies, ImmutableSet<ItemEffect> effects) {
+        this(modules, improvements, synergies, durability, durabilityMultiplier, integrityGain, integrityCost, capabilityLevels, capabilityEfficiencies,
+                capabilities, effectLevels, effectEfficiencies, effects, 0, 0);
+    }
+
+    /**
+     * Creates a copy of the given stats with attack stats applied, attack stats depend on other stats and are resolved last.
+     */
+    public ModularItemStats(ModularItemStats stats, double damage, double attackSpeed) {
+        this(stats.modules, stats.improvements, stats.synergies, stats.durability, stats.durabilityMultiplier, stats.integrityGain, stats.integrityCost,
+                stats.capabilityLevels, stats.capabilityEfficiencies, stats.capabilities, stats.effectLevels, stats.effectEfficiencies,
+                stats.effects, damage, attackSpeed);
+    }
+
+    private ModularItemStats(ImmutableList<ItemModule> modules, ImprovementData[][] improvements, SynergyData[] synergies, int durability,
+            float durabilityMultiplier, int integrityGain, int integrityCost, int[] capabilityLevels, float[] capabilityEfficiencies,
+            ImmutableSet<Capability> capabilities, int[] effectLevels, float[] effectEfficiencies, ImmutableSet<ItemEffect> effects,
+            double damage, double attackSpeed) {
+        this.modules = modules;
+        this.improvements = improvements;
+        this.synergies = synergies;
+        this.durability = durability;
+        this.durabilityMultiplier = durabilityMultiplier;
+        this.integrityGain = integrityGain;
+        this.integrityCost = integrityCost;
+        this.capabilityLevels = capabilityLevels;
+        this.capabilityEfficiencies = capabilityEfficiencies;
+        this.capabilities = capabilities;
+        this.effectLevels = effectLevels;
+        this.effectEfficiencies = effectEfficiencies;
+        this.effects = effects;
+        this.damage = damage;
+        this.attackSpeed = attackSpeed;
+
+        long effectMask = 0;
+        for (ItemEffect effect : ItemEffect.values()) {
+            if (effectLevels[effect.ordinal()] > 0) {
+                effectMask |= getEffectMask(effect);
+            }
+        }
+        this.effectMask = effectMask;
+    }
+
+    /**
+     * Get a bitmask for the given effects, to be used with {@link #hasAnyEffect(long)}. Effects beyond the 63rd share the last bit, which
+     * is fine as the mask is only used to rule out effects.
+     * @param effects The effects to include in the mask
+     * @return A bitmask for the given effects
+     */
+    public static long getEffectMask(ItemEffect ... effects) {
+        long mask = 0;
+        for (ItemEffect effect : effects) {
+            mask |= 1L << Math.min(effect.ordinal(), 63);
+        }
+        return mask;
+    }
+
+    /**
+     * Checks if the item may have a level above zero in any of the effects in the given mask, useful for bailing early from handlers that
+     * only care about a few effects. A true result does not guarantee that the effect is present, check the level to confirm.
+     * @param effectMask A bitmask created by {@link #getEffectMask(ItemEffect...)}
+     * @return false if the item has none of the given effects
+     */
+    public boolean hasAnyEffect(long effectMask) {
+        return (this.effectMask & effectMask) != 0;
+    }
+
+    /**
+     * @return a copy of the synergies that are active for the item
+     */
+    /**
+     * Get the improvements that were present on the given module when the stats were resolved.
+     * @param module A module
+     * @return A copy of the improvements of the module, or null if the module is not present on the item
+     */
+    @Nullable
+    public ImprovementData[] getImprovements(ItemModule module) {
+        int index = modules.indexOf(module);
+        if (index < 0 || index >= improvements.length) {
+            return null;
+        }
+
+        return improvements[index].clone();
+    }
+
+    public SynergyData[] getSynergies() {
+        return synergies.clone();
+    }
+
+    public int getCapabilityLevel(Capability capability) {
+        return capabilityLevels[capability.ordinal()];
+    }
+
+    public float getCapabilityEfficiency(Capability capability) {
+        return capabilityEfficiencies[capability.ordinal()];
+    }
+
+    public int getEffectLevel(ItemEffect effect) {
+        return effectLevels[effect.ordinal()];
+    }
+
+    public float getEffectEfficiency(ItemEffect effect) {
+        return effectEfficiencies[effect.ordinal()];
+    }
+
+    /**
+     * Cache key based on the contents of an item tag. Entries that change frequently during use but do not affect stats (e.g. damage or
+     * progression counters) are ignored, so that the snapshot survives normal item usage. Stored keys should be created from a copy of the
+     * tag as the tag of a stack is mutable.
+     */
+    public static class CacheKey {
+        private final CompoundNBT tag;
+        private final Predicate<String> ignored;
+        private final int hash;
+
+        public CacheKey(CompoundNBT tag, Predicate<String> ignored) {
+            this.tag = tag;
+            this.ignored = ignored;
+
+            int hash = 0;
+            for (String key : tag.keySet()) {
+                if (!ignored.test(key)) {
+                    hash += key.hashCode() ^ Objects.hashCode(tag.get(key));
+                }
+            }
+            this.hash = hash;
+        }
+
+        public CacheKey copy() {
+            return new CacheKey(tag.copy(), ignored);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            CacheKey other = (CacheKey) o;
+            if (hash != other.hash) {
+                return false;
+            }
+
+            return containsAll(other.tag) && other.containsAll(tag);
+        }
+
+        private boolean containsAll(CompoundNBT otherTag) {
+            for (String key : otherTag.keySet()) {
+                if (!ignored.test(key)) {
+                    INBT value = otherTag.get(key);
+                    if (!Objects.equals(value, tag.get(key))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
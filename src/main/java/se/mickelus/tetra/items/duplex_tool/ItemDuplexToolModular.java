@@ -21,17 +21,19 @@ import se.mickelus.tetra.data.DataManager;
 import se.mickelus.tetra.items.BasicMajorModule;
 import se.mickelus.tetra.items.BasicModule;
 import se.mickelus.tetra.items.ItemModularHandheld;
+import se.mickelus.tetra.items.ModularItemStats;
 import se.mickelus.tetra.items.TetraItemGroup;
+import se.mickelus.tetra.module.ItemModule;
 import se.mickelus.tetra.module.MultiSlotModule;
 import se.mickelus.tetra.module.Priority;
+import se.mickelus.tetra.module.data.TweakSteps;
 import se.mickelus.tetra.module.schema.RemoveSchema;
 import se.mickelus.tetra.module.schema.RepairSchema;
 import se.mickelus.tetra.network.PacketHandler;
 
 import java.util.Arrays;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
 
 
 public class ItemDuplexToolModular extends ItemModularHandheld {
@@ -75,7 +77,7 @@ public class ItemDuplexToolModular extends ItemModularHandheld {
 
     @Override
     public void init(PacketHandler packetHandler) {
-        DataManager.synergyData.onReload(() -> synergies = DataManager.instance.getSynergyData("duplex"));
+        DataManager.synergyData.onReload(() -> setSynergies(DataManager.instance.getSynergyData("duplex")));
     }
 
     @Override
@@ -125,35 +127,33 @@ public class ItemDuplexToolModular extends ItemModularHandheld {
     }
 
     @Override
-    public double getDamageModifier(ItemStack itemStack) {
-        if (isBroken(itemStack)) {
-            return 0;
-        }
-
+    protected double computeDamageModifier(ItemStack itemStack, ModularItemStats stats, TweakSteps[] tweakSteps) {
         // only use the damage from the highest damaging head
-        double damageModifier = Stream.of(getModuleFromSlot(itemStack, headLeftKey), getModuleFromSlot(itemStack, headRightKey))
-                .filter(Objects::nonNull)
-                .mapToDouble(module -> module.getDamageModifier(itemStack))
+        double damageModifier = IntStream.range(0, stats.modules.size())
+                .filter(i -> isHead(stats.modules.get(i)))
+                .mapToDouble(i -> stats.modules.get(i).getDamageModifier(itemStack, tweakSteps[i]))
                 .max()
                 .orElse(0);
 
-        damageModifier = getAllModules(itemStack).stream()
-                .filter(itemModule -> !(headLeftKey.equals(itemModule.getSlot()) || headRightKey.equals(itemModule.getSlot())))
-                .map(itemModule -> itemModule.getDamageModifier(itemStack))
+        damageModifier = IntStream.range(0, stats.modules.size())
+                .filter(i -> !isHead(stats.modules.get(i)))
+                .mapToObj(i -> stats.modules.get(i).getDamageModifier(itemStack, tweakSteps[i]))
                 .reduce(damageModifier, Double::sum);
 
-        damageModifier = Arrays.stream(getSynergyData(itemStack))
+        damageModifier = Arrays.stream(stats.getSynergies())
                 .mapToDouble(synergyData -> synergyData.damage)
                 .reduce(damageModifier, Double::sum);
 
-        damageModifier = Arrays.stream(getSynergyData(itemStack))
+        damageModifier = Arrays.stream(stats.getSynergies())
                 .mapToDouble(synergyData -> synergyData.damageMultiplier)
                 .reduce(damageModifier, (a, b) -> a * b);
 
-        return getAllModules(itemStack).stream()
-                .map(itemModule -> itemModule.getDamageMultiplierModifier(itemStack))
+        return IntStream.range(0, stats.modules.size())
+                .mapToObj(i -> stats.modules.get(i).getDamageMultiplierModifier(itemStack, tweakSteps[i]))
                 .reduce(damageModifier, (a, b) -> a * b);
     }
-}
-
 
+    private boolean isHead(ItemModule module) {
+        return headLeftKey.equals(module.getSlot()) || headRightKey.equals(module.getSlot());
+    }
+}
@@ -11,6 +11,7 @@ import net.minecraft.util.math.RayTraceResult;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.util.text.TranslationTextComponent;
 import net.minecraftforge.common.ToolType;
+import se.mickelus.tetra.ToolClassification;
 import se.mickelus.tetra.blocks.salvage.BlockInteraction;
 import se.mickelus.tetra.blocks.salvage.IBlockCapabilityInteractive;
 import se.mickelus.tetra.capabilities.ICapabilityProvider;
@@ -159,10 +160,10 @@ public class ToolbeltHelper {
                             (float) hitVector.z - blockPos.getZ()))
                     .orElse(null);
 
+            ToolType requiredTool = ToolClassification.getEffectiveTool(blockState);
             for (int i = 0; i < inventory.getSizeInventory(); i++) {
                 ItemStack itemStack = inventory.getStackInSlot(i);
                 if (effects.get(i).contains(ItemEffect.quickAccess) && !itemStack.isEmpty()) {
-                    ToolType requiredTool = blockState.getHarvestTool();
                     if (requiredTool != null && itemStack.getItem().getHarvestLevel(itemStack, requiredTool, player, blockState) > -1) {
                         return i;
                     }
@@ -3,6 +3,7 @@ package se.mickelus.tetra.module;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import net.minecraft.block.*;
+import net.minecraft.entity.Entity;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.SharedMonsterAttributes;
 import net.minecraft.entity.player.PlayerEntity;
@@ -33,14 +34,18 @@ import net.minecraftforge.eventbus.api.Event;
 import net.minecraftforge.eventbus.api.EventPriority;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import se.mickelus.tetra.EarthboundEffect;
+import se.mickelus.tetra.ToolClassification;
 import se.mickelus.tetra.ToolTypes;
 import se.mickelus.tetra.capabilities.CapabilityHelper;
 import se.mickelus.tetra.items.ItemModular;
 import se.mickelus.tetra.items.ItemModularHandheld;
+import se.mickelus.tetra.items.ModularItemStats;
 import se.mickelus.tetra.items.toolbelt.ToolbeltHelper;
 import se.mickelus.tetra.items.toolbelt.inventory.InventoryQuiver;
+import se.mickelus.tetra.module.harvest.AreaHarvester;
 import se.mickelus.tetra.util.CastOptional;
 
+import javax.annotation.Nullable;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -49,6 +54,12 @@ public class ItemEffectHandler {
 
     private Cache<UUID, Integer> strikeCache;
 
+    private static final long hurtEffects = ModularItemStats.getEffectMask(ItemEffect.quickStrike);
+    private static final long damageEffects = ModularItemStats.getEffectMask(ItemEffect.armorPenetration, ItemEffect.unarmoredDamage);
+    private static final long criticalEffects = ModularItemStats.getEffectMask(ItemEffect.backstab, ItemEffect.criticalStrike);
+    private static final long leftClickEffects = ModularItemStats.getEffectMask(ItemEffect.strikingAxe, ItemEffect.strikingPickaxe,
+            ItemEffect.strikingCut, ItemEffect.strikingShovel, ItemEffect.criticalStrike);
+
     public static ItemEffectHandler instance;
 
     private static final BlockPos[] sweep1 = new BlockPos[] {
@@ -115,9 +126,33 @@ public class ItemEffectHandler {
         return item.getEffectLevel(itemStack, effect);
     }
 
-    private double getEffectEfficiency(ItemStack itemStack, ItemEffect effect) {
-        ItemModular item = (ItemModular) itemStack.getItem();
-        return item.getEffectEfficiency(itemStack, effect);
+    /**
+     * Resolves the stats of the given itemstack for use in event handlers, all effect levels that a handler needs can then be read from
+     * the same snapshot. Returns null if the stack is not a modular item, if it's broken or if it has none of the given effects, so that
+     * handlers can bail without doing any further work.
+     * @param itemStack The itemstack involved in the event
+     * @param effectMask A mask of the effects the handler cares about
+     * @return The stats of the itemstack, or null if none of the effects could apply
+     */
+    @Nullable
+    private static ModularItemStats getEffectStats(ItemStack itemStack, long effectMask) {
+        if (!itemStack.isEmpty() && itemStack.getItem() instanceof ItemModular) {
+            ModularItemStats stats = ((ItemModular) itemStack.getItem()).getCapabilityStats(itemStack);
+            if (stats != null && stats.hasAnyEffect(effectMask)) {
+                return stats;
+            }
+        }
+
+        return null;
+    }
+
+    @Nullable
+    private static ModularItemStats getAttackerEffectStats(@Nullable Entity attacker, long effectMask) {
+        if (attacker instanceof PlayerEntity) {
+            return getEffectStats(((PlayerEntity) attacker).getHeldItemMainhand(), effectMask);
+        }
+
+        return null;
     }
 
     @SubscribeEvent(priority=EventPriority.LOW)
@@ -137,45 +172,39 @@ public class ItemEffectHandler {
 
     @SubscribeEvent
     public void onLivingHurt(LivingHurtEvent event) {
-        Optional.ofNullable(event.getSource().getTrueSource())
-                .filter(entity -> entity instanceof PlayerEntity)
-                .map(entity -> (LivingEntity) entity)
-                .map(LivingEntity::getHeldItemMainhand)
-                .filter(itemStack -> !itemStack.isEmpty())
-                .filter(itemStack -> itemStack.getItem() instanceof ItemModular)
-                .ifPresent(itemStack -> {
-                    int quickStrikeLevel = getEffectLevel(itemStack, ItemEffect.quickStrike);
-                    if (quickStrikeLevel > 0) {
-                        float maxDamage = (float) ((LivingEntity) event.getSource().getTrueSource())
-                                .getAttribute(SharedMonsterAttributes.ATTACK_DAMAGE).getValue();
-                        float multiplier = quickStrikeLevel * 0.05f + 0.2f;
-
-                        if (event.getAmount() <  multiplier * maxDamage) {
-                            event.setAmount(multiplier * maxDamage);
-                        }
-                    }
-                });
+        Entity attacker = event.getSource().getTrueSource();
+        ModularItemStats stats = getAttackerEffectStats(attacker, hurtEffects);
+        if (stats == null) {
+            return;
+        }
+
+        int quickStrikeLevel = stats.getEffectLevel(ItemEffect.quickStrike);
+        if (quickStrikeLevel > 0) {
+            float maxDamage = (float) ((LivingEntity) attacker).getAttribute(SharedMonsterAttributes.ATTACK_DAMAGE).getValue();
+            float multiplier = quickStrikeLevel * 0.05f + 0.2f;
+
+            if (event.getAmount() <  multiplier * maxDamage) {
+                event.setAmount(multiplier * maxDamage);
+            }
+        }
     }
 
     @SubscribeEvent
     public void onLivingDamage(LivingDamageEvent event) {
-        Optional.ofNullable(event.getSource().getTrueSource())
-                .filter(entity -> entity instanceof PlayerEntity)
-                .map(entity -> (LivingEntity) entity)
-                .map(LivingEntity::getHeldItemMainhand)
-                .filter(itemStack -> !itemStack.isEmpty())
-                .filter(itemStack -> itemStack.getItem() instanceof ItemModular)
-                .ifPresent(itemStack -> {
-                    int penetratingLevel = getEffectLevel(itemStack, ItemEffect.armorPenetration);
-                    if (penetratingLevel > 0 && event.getAmount() < penetratingLevel) {
-                        event.setAmount(penetratingLevel);
-                    }
+        ModularItemStats stats = getAttackerEffectStats(event.getSource().getTrueSource(), damageEffects);
+        if (stats == null) {
+            return;
+        }
 
-                    int unarmoredBonusLevel = getEffectLevel(itemStack, ItemEffect.unarmoredDamage);
-                    if (unarmoredBonusLevel > 0 && event.getEntityLiving().getTotalArmorValue() == 0) {
-                        event.setAmount(event.getAmount()  + unarmoredBonusLevel);
-                    }
-                });
+        int penetratingLevel = stats.getEffectLevel(ItemEffect.armorPenetration);
+        if (penetratingLevel > 0 && event.getAmount() < penetratingLevel) {
+            event.setAmount(penetratingLevel);
+        }
+
+        int unarmoredBonusLevel = stats.getEffectLevel(ItemEffect.unarmoredDamage);
+        if (unarmoredBonusLevel > 0 && event.getEntityLiving().getTotalArmorValue() == 0) {
+            event.setAmount(event.getAmount()  + unarmoredBonusLevel);
+        }
     }
 
 
@@ -187,105 +216,108 @@ public class ItemEffectHandler {
 
     @SubscribeEvent
     public void onCriticalHit(CriticalHitEvent event) {
-        Optional.ofNullable(event.getEntityLiving())
-                .filter(entity -> entity instanceof PlayerEntity)
-                .map(entity -> (LivingEntity) entity)
-                .map(LivingEntity::getHeldItemMainhand)
-                .filter(itemStack -> !itemStack.isEmpty())
-                .filter(itemStack -> itemStack.getItem() instanceof ItemModular)
-                .ifPresent(itemStack -> {
-                    int backstabLevel = getEffectLevel(itemStack, ItemEffect.backstab);
-                    if (backstabLevel > 0 && event.getTarget() instanceof LivingEntity) {
-                        LivingEntity attacker = event.getEntityLiving();
-                        LivingEntity target = (LivingEntity) event.getTarget();
-                        if (180 - Math.abs(Math.abs(attacker.rotationYawHead - target.rotationYawHead) % 360 - 180) < 60) {
-                            event.setDamageModifier(Math.max(1.25f + 0.25f * backstabLevel, event.getDamageModifier()));
-                            event.setResult(Event.Result.ALLOW);
-                        }
-                    }
+        ModularItemStats stats = getAttackerEffectStats(event.getEntityLiving(), criticalEffects);
+        if (stats == null) {
+            return;
+        }
 
-                    int critLevel = getEffectLevel(itemStack, ItemEffect.criticalStrike);
-                    if (critLevel > 0) {
-                        if (event.getEntityLiving().getRNG().nextFloat() < critLevel * 0.01) {
-                            event.setDamageModifier(Math.max((float) getEffectEfficiency(itemStack, ItemEffect.criticalStrike), event.getDamageModifier()));
-                            event.setResult(Event.Result.ALLOW);
-                        }
-                    }
-                });
+        int backstabLevel = stats.getEffectLevel(ItemEffect.backstab);
+        if (backstabLevel > 0 && event.getTarget() instanceof LivingEntity) {
+            LivingEntity attacker = event.getEntityLiving();
+            LivingEntity target = (LivingEntity) event.getTarget();
+            if (180 - Math.abs(Math.abs(attacker.rotationYawHead - target.rotationYawHead) % 360 - 180) < 60) {
+                event.setDamageModifier(Math.max(1.25f + 0.25f * backstabLevel, event.getDamageModifier()));
+                event.setResult(Event.Result.ALLOW);
+            }
+        }
+
+        int critLevel = stats.getEffectLevel(ItemEffect.criticalStrike);
+        if (critLevel > 0) {
+            if (event.getEntityLiving().getRNG().nextFloat() < critLevel * 0.01) {
+                event.setDamageModifier(Math.max(stats.getEffectEfficiency(ItemEffect.criticalStrike), event.getDamageModifier()));
+                event.setResult(Event.Result.ALLOW);
+            }
+        }
     }
 
     @SubscribeEvent
     public void onLeftClickBlock(PlayerInteractEvent.LeftClickBlock event) {
-        Optional.of(event.getItemStack())
-                .filter(itemStack -> !itemStack.isEmpty())
-                .filter(itemStack -> itemStack.getItem() instanceof ItemModularHandheld)
-                .ifPresent(itemStack -> {
-                    ItemModularHandheld item = (ItemModularHandheld) itemStack.getItem();
-                    int strikingLevel = 0;
-                    BlockPos pos = event.getPos();
-                    World world = event.getWorld();
-                    BlockState blockState = world.getBlockState(pos);
-                    PlayerEntity breakingPlayer = event.getPlayer();
-                    ToolType tool = null;
-
-                    // essentially checks if the item is effective in for each tool type, and checks if it can strike for that type
-                    if (ItemModularHandheld.isToolEffective(ToolType.AXE, blockState)) {
-                        strikingLevel = getEffectLevel(itemStack, ItemEffect.strikingAxe);
-                        if (strikingLevel > 0) {
-                            tool = ToolType.AXE;
-                        }
-                    }
+        ItemStack itemStack = event.getItemStack();
+        if (!(itemStack.getItem() instanceof ItemModularHandheld)) {
+            return;
+        }
 
-                    if (strikingLevel <= 0 && ItemModularHandheld.isToolEffective(ToolType.PICKAXE, blockState)) {
-                        strikingLevel = getEffectLevel(itemStack, ItemEffect.strikingPickaxe);
-                        if (strikingLevel > 0) {
-                            tool = ToolType.PICKAXE;
-                        }
-                    }
+        ModularItemStats stats = getEffectStats(itemStack, leftClickEffects);
+        if (stats == null) {
+            return;
+        }
 
-                    if (strikingLevel <= 0 && ItemModularHandheld.isToolEffective(ToolTypes.cut, blockState)) {
-                        strikingLevel = getEffectLevel(itemStack, ItemEffect.strikingCut);
-                        if (strikingLevel > 0) {
-                            tool = ToolTypes.cut;
-                        }
-                    }
+        ItemModularHandheld item = (ItemModularHandheld) itemStack.getItem();
+        int strikingLevel = 0;
+        BlockPos pos = event.getPos();
+        World world = event.getWorld();
+        BlockState blockState = world.getBlockState(pos);
+        PlayerEntity breakingPlayer = event.getPlayer();
+        ToolType tool = null;
+
+        // essentially checks if the item is effective in for each tool type, and checks if it can strike for that type
+        if (ToolClassification.isToolEffective(ToolType.AXE, blockState)) {
+            strikingLevel = stats.getEffectLevel(ItemEffect.strikingAxe);
+            if (strikingLevel > 0) {
+                tool = ToolType.AXE;
+            }
+        }
 
-                    if (strikingLevel <= 0 && ItemModularHandheld.isToolEffective(ToolType.SHOVEL, blockState)) {
-                        strikingLevel = getEffectLevel(itemStack, ItemEffect.strikingShovel);
-                        if (strikingLevel > 0) {
-                            tool = ToolType.SHOVEL;
-                        }
-                    }
+        if (strikingLevel <= 0 && ToolClassification.isToolEffective(ToolType.PICKAXE, blockState)) {
+            strikingLevel = stats.getEffectLevel(ItemEffect.strikingPickaxe);
+            if (strikingLevel > 0) {
+                tool = ToolType.PICKAXE;
+            }
+        }
 
-                    if (strikingLevel > 0) {
-                        int sweepingLevel = getEffectLevel(itemStack, ItemEffect.sweepingStrike);
-                        if (breakingPlayer.getCooledAttackStrength(0) > 0.9) {
-                            if (sweepingLevel > 0) {
-                                breakBlocksAround(world, breakingPlayer, itemStack, pos, tool, sweepingLevel);
-                            } else {
-                                int toolLevel = itemStack.getItem().getHarvestLevel(itemStack, tool, breakingPlayer, blockState);
-                                if ((toolLevel >= 0 && toolLevel >= blockState.getBlock().getHarvestLevel(blockState))
-                                        || itemStack.canHarvestBlock(blockState)) {
-                                    breakBlock(world, breakingPlayer, itemStack, pos, blockState, true);
-                                }
-                            }
-
-                            item.applyUsageEffects(breakingPlayer, itemStack, 1);
-                            item.applyDamage(item.getBlockDestroyDamage(), itemStack, breakingPlayer);
-                        }
-                        event.setCanceled(true);
-                        breakingPlayer.resetCooldown();
-                    }
+        if (strikingLevel <= 0 && ToolClassification.isToolEffective(ToolTypes.cut, blockState)) {
+            strikingLevel = stats.getEffectLevel(ItemEffect.strikingCut);
+            if (strikingLevel > 0) {
+                tool = ToolTypes.cut;
+            }
+        }
 
-                    if (!event.getWorld().isRemote) {
-                        int critLevel = getEffectLevel(itemStack, ItemEffect.criticalStrike);
-                        if (critLevel > 0) {
-                            if (critBlock(world, breakingPlayer, pos, blockState, itemStack, tool, critLevel)) {
-                                event.setCanceled(true);
-                            }
-                        }
+        if (strikingLevel <= 0 && ToolClassification.isToolEffective(ToolType.SHOVEL, blockState)) {
+            strikingLevel = stats.getEffectLevel(ItemEffect.strikingShovel);
+            if (strikingLevel > 0) {
+                tool = ToolType.SHOVEL;
+            }
+        }
+
+        if (strikingLevel > 0) {
+            int sweepingLevel = stats.getEffectLevel(ItemEffect.sweepingStrike);
+            if (breakingPlayer.getCooledAttackStrength(0) > 0.9) {
+                if (sweepingLevel > 0) {
+                    breakBlocksAround(world, breakingPlayer, itemStack, pos, tool, sweepingLevel);
+                } else {
+                    int toolLevel = itemStack.getItem().getHarvestLevel(itemStack, tool, breakingPlayer, blockState);
+                    if ((toolLevel >= 0 && toolLevel >= blockState.getBlock().getHarvestLevel(blockState))
+                            || itemStack.canHarvestBlock(blockState)) {
+                        breakBlock(world, breakingPlayer, itemStack, pos, blockState, true);
                     }
-                });
+                }
+
+                item.applyUsageEffects(breakingPlayer, itemStack, 1);
+                ItemModular.applyDamage(item.getBlockDestroyDamage(), breakingPlayer, itemStack);
+            }
+            event.setCanceled(true);
+            breakingPlayer.resetCooldown();
+        }
+
+        if (!event.getWorld().isRemote) {
+            int critLevel = stats.getEffectLevel(ItemEffect.criticalStrike);
+            // the item may have broken from the strike above
+            if (critLevel > 0 && !item.isBroken(itemStack)) {
+                if (critBlock(world, breakingPlayer, pos, blockState, itemStack, tool, critLevel)) {
+                    event.setCanceled(true);
+                }
+            }
+        }
     }
 
     private boolean critBlock(World world, PlayerEntity breakingPlayer, BlockPos pos, BlockState blockState, ItemStack itemStack,
@@ -296,7 +328,7 @@ public class ItemEffectHandler {
 
             if (( toolLevel >= 0 && toolLevel >= blockState.getBlock().getHarvestLevel(blockState) ) || itemStack.canHarvestBlock(blockState)) {
                 breakBlock(world, breakingPlayer, itemStack, pos, blockState, true);
-                itemStack.damageItem(2, breakingPlayer, t -> {});
+                ItemModular.applyDamage(2, breakingPlayer, itemStack);
 
                 ((ItemModular) itemStack.getItem()).tickProgression(breakingPlayer, itemStack, 1);
 
@@ -358,36 +390,60 @@ public class ItemEffectHandler {
     public static boolean breakBlock(World world, PlayerEntity breakingPlayer, ItemStack toolStack, BlockPos pos, BlockState blockState,
             boolean harvest) {
         if (!world.isRemote) {
-            ServerPlayerEntity serverPlayer = (ServerPlayerEntity) breakingPlayer;
-            GameType gameType = serverPlayer.interactionManager.getGameType();
+            int exp = breakBlock((ServerPlayerEntity) breakingPlayer, world, toolStack, pos, blockState, harvest);
+
+            if (exp > 0) {
+                blockState.getBlock().dropXpOnBlockBreak(world, pos, exp);
+            }
+
+            return exp != -1;
+        } else {
+            return blockState.getBlock().removedByPlayer(blockState, world, pos, breakingPlayer, harvest,
+                    world.getFluidState(pos));
+        }
+    }
+
+    /**
+     * Break and harvest a block in the world as a player, without dropping experience. Used when breaking several blocks at once so that
+     * experience can be dropped as a single batch. Only works on the server.
+     * @param world the world in which to break blocks
+     * @param breakingPlayer the player which is breaking the blocks
+     * @param toolStack the itemstack used to break the blocks
+     * @param pos the position which to break blocks around
+     * @param blockState the state of the block that is to broken
+     * @return the amount of experience that should be dropped for the block, or -1 if the player was not allowed to break the block
+     */
+    public static int breakBlockDeferExperience(World world, PlayerEntity breakingPlayer, ItemStack toolStack, BlockPos pos,
+            BlockState blockState) {
+        return breakBlock((ServerPlayerEntity) breakingPlayer, world, toolStack, pos, blockState, true);
+    }
+
+    private static int breakBlock(ServerPlayerEntity breakingPlayer, World world, ItemStack toolStack, BlockPos pos, BlockState blockState,
+            boolean harvest) {
+        GameType gameType = breakingPlayer.interactionManager.getGameType();
 
-            int exp = net.minecraftforge.common.ForgeHooks.onBlockBreakEvent(world, gameType, serverPlayer, pos);
+        int exp = net.minecraftforge.common.ForgeHooks.onBlockBreakEvent(world, gameType, breakingPlayer, pos);
 
-            if (exp != -1) {
-                boolean canRemove = !toolStack.onBlockStartBreak(pos, breakingPlayer)
-                        && !breakingPlayer.func_223729_a(world, pos, gameType)
-                        && blockState.canHarvestBlock(world, pos, breakingPlayer)
-                        && blockState.getBlock().removedByPlayer(blockState, world, pos, breakingPlayer, harvest, world.getFluidState(pos));
+        if (exp != -1) {
+            boolean canRemove = !toolStack.onBlockStartBreak(pos, breakingPlayer)
+                    && !breakingPlayer.func_223729_a(world, pos, gameType)
+                    && blockState.canHarvestBlock(world, pos, breakingPlayer)
+                    && blockState.getBlock().removedByPlayer(blockState, world, pos, breakingPlayer, harvest, world.getFluidState(pos));
 
-                if (canRemove) {
-                    blockState.getBlock().onPlayerDestroy(world, pos, blockState);
+            if (canRemove) {
+                blockState.getBlock().onPlayerDestroy(world, pos, blockState);
 
-                    if (harvest) {
-                        blockState.getBlock().harvestBlock(world, breakingPlayer, pos, blockState, world.getTileEntity(pos), toolStack);
+                if (harvest) {
+                    blockState.getBlock().harvestBlock(world, breakingPlayer, pos, blockState, world.getTileEntity(pos), toolStack);
 
-                        if (exp > 0) {
-                            blockState.getBlock().dropXpOnBlockBreak(world, pos, exp);
-                        }
-                    }
+                    return Math.max(exp, 0);
                 }
-                return canRemove;
-            }
 
-            return false;
-        } else {
-            return blockState.getBlock().removedByPlayer(blockState, world, pos, breakingPlayer, harvest,
-                    world.getFluidState(pos));
+                return 0;
+            }
         }
+
+        return -1;
     }
 
     /**
@@ -412,30 +468,8 @@ public class ItemEffectHandler {
 
         breakingPlayer.spawnSweepParticles();
 
-        Arrays.stream((strikeCounter / 2) % 2 == 0 ? sweep1 : sweep2)
-                .map(pos -> (alternate ? new BlockPos(-pos.getX(), pos.getY(), pos.getZ()) : pos))
-                .map(pos -> rotatePos(pos, facing))
-                .map(originPos::add)
-                .forEachOrdered(pos -> {
-                    BlockState blockState = world.getBlockState(pos);
-
-                    // make sure that only blocks which require the same tool are broken
-                    if (ItemModularHandheld.isToolEffective(tool, blockState)) {
-
-                        // check that the tool level is high enough and break the block
-                        int toolLevel = toolStack.getItem().getHarvestLevel(toolStack, tool, breakingPlayer, blockState);
-                        if ((toolLevel >= 0 && toolLevel >= blockState.getBlock().getHarvestLevel(blockState))
-                                || toolStack.canHarvestBlock(blockState)) {
-
-                            // the break event has to be sent the player separately as it's sent to the others inside Block.onBlockHarvested
-                            if (breakingPlayer instanceof ServerPlayerEntity) {
-                                sendEventToPlayer((ServerPlayerEntity) breakingPlayer, 2001, pos, Block.getStateId(blockState));
-                            }
-
-                            breakBlock(world, breakingPlayer, toolStack, pos, blockState, true);
-                        }
-                    }
-                });
+        BlockPos[] pattern = AreaHarvester.orient((strikeCounter / 2) % 2 == 0 ? sweep1 : sweep2, facing, alternate);
+        AreaHarvester.harvest(world, breakingPlayer, toolStack, tool, originPos, pattern);
     }
 
     /**
@@ -466,20 +500,6 @@ public class ItemEffectHandler {
         return counter;
     }
 
-    private BlockPos rotatePos(BlockPos pos, Direction facing) {
-        switch (facing) {
-            default:
-            case SOUTH:
-                return pos;
-            case WEST:
-                return new BlockPos(-pos.getZ(), pos.getY(), pos.getX());
-            case NORTH:
-                return new BlockPos(-pos.getX(), pos.getY(), -pos.getZ());
-            case EAST:
-                return new BlockPos(pos.getZ(), pos.getY(), -pos.getX());
-        }
-    }
-
     @SubscribeEvent(priority = EventPriority.LOW)
     public void onArrowNock(ArrowNockEvent event) {
         PlayerEntity player = event.getPlayer();
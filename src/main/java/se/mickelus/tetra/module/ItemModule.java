@@ -1,9 +1,14 @@
 package se.mickelus.tetra.module;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import com.google.common.collect.ImmutableMap;
 import net.minecraft.client.resources.I18n;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.player.PlayerEntity;
@@ -16,14 +21,20 @@ import se.mickelus.tetra.capabilities.ICapabilityProvider;
 import se.mickelus.tetra.module.data.ModuleVariantData;
 import se.mickelus.tetra.module.data.ModuleModel;
 import se.mickelus.tetra.module.data.TweakData;
+import se.mickelus.tetra.module.data.TweakSteps;
 import se.mickelus.tetra.module.schema.Material;
 import se.mickelus.tetra.module.schema.RepairDefinition;
 
 public abstract class ItemModule implements ICapabilityProvider {
 
-    protected ModuleVariantData[] variantData = new ModuleVariantData[0];
+    private ModuleVariantData[] variantData = new ModuleVariantData[0];
+    private Map<String, ModuleVariantData> variantLookup = Collections.emptyMap();
+    private ModuleVariantData defaultVariant = new ModuleVariantData();
 
-    protected TweakData[] tweaks = new TweakData[0];
+    private Map<String, TweakData[]> variantTweaks = Collections.emptyMap();
+    private Map<String, String> tweakTagKeys = Collections.emptyMap();
+
+    protected static final TweakData[] noTweaks = new TweakData[0];
 
     protected final String slotTagKey;
     protected final String moduleKey;
@@ -71,6 +82,24 @@ public abstract class ItemModule implements ICapabilityProvider {
         return variantData;
     }
 
+    /**
+     * Sets the variants of this module and builds the lookup used to resolve variants by key. The first variant is used as a fallback
+     * when no variant matches a given key.
+     * @param variants The variants available for this module
+     */
+    protected void setVariantData(ModuleVariantData[] variants) {
+        Map<String, ModuleVariantData> lookup = new HashMap<>(variants.length);
+        for (ModuleVariantData variant : variants) {
+            if (variant.key != null) {
+                lookup.putIfAbsent(variant.key, variant);
+            }
+        }
+
+        variantData = variants;
+        variantLookup = ImmutableMap.copyOf(lookup);
+        defaultVariant = variants.length > 0 ? variants[0] : new ModuleVariantData();
+    }
+
     public ModuleVariantData getVariantData(ItemStack itemStack) {
         CompoundNBT tag = NBTHelper.getTag(itemStack);
         String variantKey = tag.getString(variantTagKey);
@@ -79,13 +108,11 @@ public abstract class ItemModule implements ICapabilityProvider {
     }
 
     public ModuleVariantData getVariantData(String variantKey) {
-        return Arrays.stream(variantData)
-                .filter(moduleData -> moduleData.key.equals(variantKey))
-                .findAny().orElseGet(this::getDefaultData);
+        return variantLookup.getOrDefault(variantKey, defaultVariant);
     }
 
     public ModuleVariantData getDefaultData() {
-        return variantData.length > 0 ? variantData[0] : new ModuleVariantData();
+        return defaultVariant;
     }
 
     public String getName(ItemStack itemStack) {
@@ -180,15 +207,33 @@ public abstract class ItemModule implements ICapabilityProvider {
     }
 
     public int getDurability(ItemStack itemStack) {
-        return Arrays.stream(getTweaks(itemStack))
-                .mapToInt(tweak -> tweak.getDurability(getTweakStep(itemStack, tweak)))
-                .sum() + getVariantData(itemStack).durability;
+        return getDurability(itemStack, getTweakSteps(itemStack));
+    }
+
+    public int getDurability(ItemStack itemStack, TweakSteps tweakSteps) {
+        TweakData[] tweaks = tweakSteps.tweaks;
+        int[] steps = tweakSteps.steps;
+
+        int durability = getVariantData(itemStack).durability;
+        for (int i = 0; i < tweaks.length; i++) {
+            durability += tweaks[i].getDurability(steps[i]);
+        }
+        return durability;
     }
 
     public float getDurabilityMultiplier(ItemStack itemStack) {
-        return Arrays.stream(getTweaks(itemStack))
-                .map(tweak -> tweak.getDurabilityMultiplier(getTweakStep(itemStack, tweak)))
-                .reduce(getVariantData(itemStack).durabilityMultiplier, (a, b) -> a * b);
+        return getDurabilityMultiplier(itemStack, getTweakSteps(itemStack));
+    }
+
+    public float getDurabilityMultiplier(ItemStack itemStack, TweakSteps tweakSteps) {
+        TweakData[] tweaks = tweakSteps.tweaks;
+        int[] steps = tweakSteps.steps;
+
+        float multiplier = getVariantData(itemStack).durabilityMultiplier;
+        for (int i = 0; i < tweaks.length; i++) {
+            multiplier *= tweaks[i].getDurabilityMultiplier(steps[i]);
+        }
+        return multiplier;
     }
 
     public Material getRepairMaterial(ItemStack itemStack) {
@@ -219,62 +264,168 @@ public abstract class ItemModule implements ICapabilityProvider {
         return 0;
     }
 
+    /**
+     * Sets the tweaks available for this module and builds per variant lookups for them, along with the tag keys used to store the
+     * step of each tweak.
+     * @param tweaks All tweaks available for this module
+     */
+    protected void setTweaks(TweakData[] tweaks) {
+        Map<String, List<TweakData>> variantTweaksBuilder = new HashMap<>();
+        Map<String, String> tagKeysBuilder = new HashMap<>();
+        for (TweakData tweak : tweaks) {
+            if (tweak.variant != null) {
+                variantTweaksBuilder.computeIfAbsent(tweak.variant, variant -> new ArrayList<>()).add(tweak);
+            }
+
+            if (tweak.key != null) {
+                tagKeysBuilder.putIfAbsent(tweak.key, slotTagKey + ":" + tweak.key);
+            }
+        }
+
+        variantTweaks = variantTweaksBuilder.entrySet().stream()
+                .collect(ImmutableMap.toImmutableMap(Map.Entry::getKey, entry -> entry.getValue().toArray(new TweakData[0])));
+        tweakTagKeys = ImmutableMap.copyOf(tagKeysBuilder);
+    }
+
     public boolean isTweakable(ItemStack itemStack) {
         String variant = NBTHelper.getTag(itemStack).getString(this.variantTagKey);
-        return Arrays.stream(tweaks)
-                .anyMatch(data -> variant.equals(data.variant));
+        return variantTweaks.containsKey(variant);
     }
 
+    /**
+     * Returns the tweaks that apply to the given itemstack. The returned array is shared and should not be modified.
+     * @param itemStack An itemstack containing module data for this module
+     * @return The tweaks applicable for the current variant
+     */
     public TweakData[] getTweaks(ItemStack itemStack) {
         CompoundNBT tag = NBTHelper.getTag(itemStack);
         String variant = tag.getString(this.variantTagKey);
-        return Arrays.stream(tweaks)
-                .filter(tweak -> variant.equals(tweak.variant))
-                .toArray(TweakData[]::new);
+        return variantTweaks.getOrDefault(variant, noTweaks);
     }
 
     public boolean hasTweak(ItemStack itemStack, String tweakKey) {
-        return Arrays.stream(getTweaks(itemStack))
-                .map(tweak -> tweak.key)
-                .anyMatch(tweakKey::equals);
+        for (TweakData tweak : getTweaks(itemStack)) {
+            if (tweakKey.equals(tweak.key)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public int getTweakStep(ItemStack itemStack, TweakData tweak) {
-        return Math.max(Math.min(NBTHelper.getTag(itemStack).getInt(slotTagKey + ":" + tweak.key), tweak.steps), -tweak.steps);
+        return getTweakStep(NBTHelper.getTag(itemStack), tweak);
+    }
+
+    /**
+     * Resolves the tweaks that apply to the given itemstack along with their steps, in a single pass over the stack tag. Pass the result
+     * to the stat getters that accept it when reading several stats from the same itemstack.
+     * @param itemStack An itemstack containing module data for this module
+     * @return The applicable tweaks and the step of each tweak
+     */
+    public TweakSteps getTweakSteps(ItemStack itemStack) {
+        TweakData[] tweaks = getTweaks(itemStack);
+        if (tweaks.length == 0) {
+            return TweakSteps.empty;
+        }
+
+        CompoundNBT tag = NBTHelper.getTag(itemStack);
+        int[] steps = new int[tweaks.length];
+        for (int i = 0; i < tweaks.length; i++) {
+            steps[i] = getTweakStep(tag, tweaks[i]);
+        }
+        return new TweakSteps(tweaks, steps);
+    }
+
+    private int getTweakStep(CompoundNBT tag, TweakData tweak) {
+        return Math.max(Math.min(tag.getInt(getTweakTagKey(tweak.key)), tweak.steps), -tweak.steps);
+    }
+
+    private String getTweakTagKey(String tweakKey) {
+        String tagKey = tweakTagKeys.get(tweakKey);
+        if (tagKey != null) {
+            return tagKey;
+        }
+        return slotTagKey + ":" + tweakKey;
     }
 
     public void setTweakStep(ItemStack itemStack, String tweakKey, int step) {
-        NBTHelper.getTag(itemStack).putInt(slotTagKey + ":" + tweakKey, step);
+        NBTHelper.getTag(itemStack).putInt(getTweakTagKey(tweakKey), step);
     }
 
     public double getDamageModifier(ItemStack itemStack) {
-        return Arrays.stream(getTweaks(itemStack))
-                .mapToDouble(tweak -> tweak.getDamage(getTweakStep(itemStack, tweak)))
-                .sum() + getVariantData(itemStack).damage;
+        return getDamageModifier(itemStack, getTweakSteps(itemStack));
+    }
+
+    public double getDamageModifier(ItemStack itemStack, TweakSteps tweakSteps) {
+        TweakData[] tweaks = tweakSteps.tweaks;
+        int[] steps = tweakSteps.steps;
+
+        double damage = getVariantData(itemStack).damage;
+        for (int i = 0; i < tweaks.length; i++) {
+            damage += tweaks[i].getDamage(steps[i]);
+        }
+        return damage;
     }
 
     public double getDamageMultiplierModifier(ItemStack itemStack) {
-        return Arrays.stream(getTweaks(itemStack))
-                .map(tweak -> tweak.getDamageMultiplier(getTweakStep(itemStack, tweak)))
-                .reduce(getVariantData(itemStack).damageMultiplier, (a, b) -> a * b);
+        return getDamageMultiplierModifier(itemStack, getTweakSteps(itemStack));
+    }
+
+    public double getDamageMultiplierModifier(ItemStack itemStack, TweakSteps tweakSteps) {
+        TweakData[] tweaks = tweakSteps.tweaks;
+        int[] steps = tweakSteps.steps;
+
+        float multiplier = getVariantData(itemStack).damageMultiplier;
+        for (int i = 0; i < tweaks.length; i++) {
+            multiplier *= tweaks[i].getDamageMultiplier(steps[i]);
+        }
+        return multiplier;
     }
 
     public double getSpeedModifier(ItemStack itemStack) {
-        return Arrays.stream(getTweaks(itemStack))
-                .mapToDouble(tweak -> tweak.getAttackSpeed(getTweakStep(itemStack, tweak)))
-                .sum() + getVariantData(itemStack).attackSpeed;
+        return getSpeedModifier(itemStack, getTweakSteps(itemStack));
+    }
+
+    public double getSpeedModifier(ItemStack itemStack, TweakSteps tweakSteps) {
+        TweakData[] tweaks = tweakSteps.tweaks;
+        int[] steps = tweakSteps.steps;
+
+        double speed = getVariantData(itemStack).attackSpeed;
+        for (int i = 0; i < tweaks.length; i++) {
+            speed += tweaks[i].getAttackSpeed(steps[i]);
+        }
+        return speed;
     }
 
     public double getSpeedMultiplierModifier(ItemStack itemStack) {
-        return Arrays.stream(getTweaks(itemStack))
-                .map(tweak -> tweak.getAttackSpeedMultiplier(getTweakStep(itemStack, tweak)))
-                .reduce(getVariantData(itemStack).attackSpeedMultiplier, (a, b) -> a * b);
+        return getSpeedMultiplierModifier(itemStack, getTweakSteps(itemStack));
+    }
+
+    public double getSpeedMultiplierModifier(ItemStack itemStack, TweakSteps tweakSteps) {
+        TweakData[] tweaks = tweakSteps.tweaks;
+        int[] steps = tweakSteps.steps;
+
+        float multiplier = getVariantData(itemStack).attackSpeedMultiplier;
+        for (int i = 0; i < tweaks.length; i++) {
+            multiplier *= tweaks[i].getAttackSpeedMultiplier(steps[i]);
+        }
+        return multiplier;
     }
 
     public ResourceLocation[] getTextures(ItemStack itemStack) {
         return new ResourceLocation[] { getVariantData(itemStack).getTextureLocation() };
     }
 
+    /**
+     * Returns a key identifying the models of this module on the given itemstack, used to look up baked models for modular items.
+     * Should change whenever the result of {@link #getModels(ItemStack)} would change.
+     * @param itemStack The itemstack which the module is present on
+     * @return A model key for this module
+     */
+    public String getModelKey(ItemStack itemStack) {
+        return getKey() + ":" + getVariantData(itemStack).key;
+    }
+
     public ModuleModel[] getModels(ItemStack itemStack) {
         ModuleVariantData data = getVariantData(itemStack);
 
@@ -298,9 +449,18 @@ public abstract class ItemModule implements ICapabilityProvider {
     }
 
     public float getEffectEfficiency(ItemStack itemStack, ItemEffect effect) {
-        return (float) Arrays.stream(getTweaks(itemStack))
-                .mapToDouble(tweak -> tweak.getEffectEfficiency(effect, getTweakStep(itemStack, tweak)))
-                .sum() + getVariantData(itemStack).effects.getEfficiency(effect);
+        return getEffectEfficiency(itemStack, getTweakSteps(itemStack), effect);
+    }
+
+    public float getEffectEfficiency(ItemStack itemStack, TweakSteps tweakSteps, ItemEffect effect) {
+        TweakData[] tweaks = tweakSteps.tweaks;
+        int[] steps = tweakSteps.steps;
+
+        float efficiency = getVariantData(itemStack).effects.getEfficiency(effect);
+        for (int i = 0; i < tweaks.length; i++) {
+            efficiency += tweaks[i].getEffectEfficiency(effect, steps[i]);
+        }
+        return efficiency;
     }
 
     public Collection<ItemEffect> getEffects(ItemStack itemStack) {
@@ -314,9 +474,18 @@ public abstract class ItemModule implements ICapabilityProvider {
 
     @Override
     public float getCapabilityEfficiency(ItemStack itemStack, Capability capability) {
-        return (float) Arrays.stream(getTweaks(itemStack))
-                .mapToDouble(tweak -> tweak.getCapabilityEfficiency(capability, getTweakStep(itemStack, tweak)))
-                .sum() + getVariantData(itemStack).capabilities.getEfficiency(capability);
+        return getCapabilityEfficiency(itemStack, getTweakSteps(itemStack), capability);
+    }
+
+    public float getCapabilityEfficiency(ItemStack itemStack, TweakSteps tweakSteps, Capability capability) {
+        TweakData[] tweaks = tweakSteps.tweaks;
+        int[] steps = tweakSteps.steps;
+
+        float efficiency = getVariantData(itemStack).capabilities.getEfficiency(capability);
+        for (int i = 0; i < tweaks.length; i++) {
+            efficiency += tweaks[i].getCapabilityEfficiency(capability, steps[i]);
+        }
+        return efficiency;
     }
 
     @Override
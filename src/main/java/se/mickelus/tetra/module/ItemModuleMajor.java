@@ -1,7 +1,12 @@
 package se.mickelus.tetra.module;
 
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableTable;
 import com.google.common.collect.Streams;
+import com.google.common.collect.Table;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.item.ItemStack;
@@ -14,31 +19,52 @@ import se.mickelus.tetra.TetraMod;
 import se.mickelus.tetra.capabilities.Capability;
 import se.mickelus.tetra.items.ItemColors;
 import se.mickelus.tetra.items.ItemModular;
+import se.mickelus.tetra.items.ModularItemStats;
 import se.mickelus.tetra.module.data.ImprovementData;
 import se.mickelus.tetra.module.data.ModuleModel;
 import se.mickelus.tetra.module.data.TweakData;
+import se.mickelus.tetra.module.data.TweakSteps;
 import se.mickelus.tetra.module.improvement.SettlePacket;
 import se.mickelus.tetra.network.PacketHandler;
 import se.mickelus.tetra.util.CastOptional;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public abstract class ItemModuleMajor extends ItemModule {
 
     protected ImprovementData[] improvements = new ImprovementData[0];
+    private Table<String, Integer, ImprovementData> improvementIndex = ImmutableTable.of();
+    private Map<String, String> improvementTagKeys = Collections.emptyMap();
+
+    /**
+     * Improvements decoded from stack tags, keyed by the improvement levels read from the tag. Modifying the tag changes the key, so
+     * entries never have to be invalidated.
+     */
+    private final Cache<ImprovementLevels, ImprovementData[]> improvementCache = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(5, TimeUnit.MINUTES)
+            .build();
 
     public static final String settleImprovement = "settled";
     public static final String arrestedImprovement = "arrested";
 
+    public static final String settleProgressSuffix = "/settle_progress";
+
     protected int settleMax = 0;
-    private String settleProgressKey = "/settle_progress";
+    private String settleProgressKey;
+
+    private Map<String, TweakData[]> improvementTweaks = Collections.emptyMap();
 
     public ItemModuleMajor(String slotKey, String moduleKey) {
         super(slotKey, moduleKey);
 
-        settleProgressKey = getSlot() + settleProgressKey;
+        settleProgressKey = getSlot() + settleProgressSuffix;
     }
 
     public void tickProgression(LivingEntity entity, ItemStack itemStack, int multiplier) {
@@ -66,6 +92,18 @@ public abstract class ItemModuleMajor extends ItemModule {
         }
     }
 
+    /**
+     * Checks if this module is progressing towards settling, i.e. if it can settle further and has not been arrested.
+     * @param itemStack The itemstack which the module is present on
+     * @return true if using the item progresses this module towards settling
+     */
+    public boolean isSettling(ItemStack itemStack) {
+        int settleMaxCount = getSettleMaxCount(itemStack);
+        return settleMaxCount != 0
+                && getImprovementLevel(itemStack, settleImprovement) < settleMaxCount
+                && getImprovementLevel(itemStack, arrestedImprovement) == -1;
+    }
+
     /**
      * Returns the remaining number of times the item has to be used before this module will settle.
      * @param itemStack The itemstack which the module is present on
@@ -114,47 +152,129 @@ public abstract class ItemModuleMajor extends ItemModule {
         NBTHelper.getTag(itemStack).remove(String.format(settleProgressKey, getSlot()));
     }
 
+    /**
+     * Sets the improvements available for this module, and builds an index of improvements by key and level along with the tag keys
+     * used to store the level of each improvement.
+     * @param improvements All improvements available for this module, no two improvements should share both key and level
+     */
+    protected void setImprovements(ImprovementData[] improvements) {
+        ImmutableTable.Builder<String, Integer, ImprovementData> indexBuilder = ImmutableTable.builder();
+        Map<String, String> tagKeysBuilder = new LinkedHashMap<>();
+        for (ImprovementData improvement : improvements) {
+            indexBuilder.put(improvement.key, improvement.level, improvement);
+            tagKeysBuilder.putIfAbsent(improvement.key, slotTagKey + ":" + improvement.key);
+        }
+
+        this.improvements = improvements;
+        improvementIndex = indexBuilder.build();
+        improvementTagKeys = ImmutableMap.copyOf(tagKeysBuilder);
+        improvementCache.invalidateAll();
+    }
+
+    private String getImprovementTagKey(String improvementKey) {
+        String tagKey = improvementTagKeys.get(improvementKey);
+        if (tagKey != null) {
+            return tagKey;
+        }
+        return slotTagKey + ":" + improvementKey;
+    }
+
     public int getImprovementLevel(ItemStack itemStack, String improvementKey) {
         CompoundNBT tag = NBTHelper.getTag(itemStack);
-        if (tag.contains(slotTagKey + ":" + improvementKey)) {
-            return tag.getInt(slotTagKey + ":" + improvementKey);
+        String tagKey = getImprovementTagKey(improvementKey);
+        if (tag.contains(tagKey)) {
+            return tag.getInt(tagKey);
         }
         return -1;
     }
 
     public ImprovementData getImprovement(ItemStack itemStack, String improvementKey) {
-        CompoundNBT tag = NBTHelper.getTag(itemStack);
-        return Arrays.stream(improvements)
-                .filter(improvement -> improvementKey.equals(improvement.key))
-                .filter(improvement -> tag.contains(slotTagKey + ":" + improvement.key))
-                .filter(improvement -> improvement.level == tag.getInt(slotTagKey + ":" + improvement.key))
-                .findAny()
-                .orElse(null);
+        for (ImprovementData improvement : readImprovements(itemStack)) {
+            if (improvementKey.equals(improvement.key)) {
+                return improvement;
+            }
+        }
+        return null;
     }
 
+    /**
+     * Returns the improvements present for this module on the given itemstack. Improvements are read from the stat snapshot of the stack
+     * when one has been resolved, otherwise they are read from the stack tag.
+     * @param itemStack The itemstack which the module is present on
+     * @return A copy of the improvements present on the given itemstack
+     */
     public ImprovementData[] getImprovements(ItemStack itemStack) {
+        if (improvements.length == 0) {
+            return improvements;
+        }
+
+        if (itemStack.getItem() instanceof ItemModular) {
+            ModularItemStats stats = ((ItemModular) itemStack.getItem()).getCachedStats(itemStack);
+            if (stats != null) {
+                ImprovementData[] result = stats.getImprovements(this);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+
+        return readImprovements(itemStack).clone();
+    }
+
+    /**
+     * Reads the improvements present for this module from the tag of the given itemstack, used when stats are resolved. Improvements are
+     * cached by the levels read from the stack tag, so that stacks with the same improvements share the decoded result. The returned
+     * array is shared and should not be modified.
+     * @param itemStack The itemstack which the module is present on
+     * @return The improvements present on the given itemstack
+     */
+    public ImprovementData[] readImprovements(ItemStack itemStack) {
+        if (improvements.length == 0) {
+            return improvements;
+        }
+
         CompoundNBT tag = NBTHelper.getTag(itemStack);
-        return Arrays.stream(improvements)
-            .filter(improvement -> tag.contains(slotTagKey + ":" + improvement.key))
-            .filter(improvement -> improvement.level == tag.getInt(slotTagKey + ":" + improvement.key))
-            .toArray(ImprovementData[]::new);
+        ImprovementLevels levels = new ImprovementLevels(improvementTagKeys.values().stream()
+                .mapToInt(tagKey -> tag.contains(tagKey) ? tag.getInt(tagKey) : ImprovementLevels.absent)
+                .toArray());
+
+        ImprovementData[] result = improvementCache.getIfPresent(levels);
+        if (result == null) {
+            result = decodeImprovements(levels);
+            improvementCache.put(levels, result);
+        }
+
+        return result;
+    }
+
+    private ImprovementData[] decodeImprovements(ImprovementLevels levels) {
+        ImprovementData[] result = new ImprovementData[improvementTagKeys.size()];
+        int count = 0;
+        int i = 0;
+        for (String improvementKey : improvementTagKeys.keySet()) {
+            if (levels.levels[i] != ImprovementLevels.absent) {
+                ImprovementData improvement = improvementIndex.get(improvementKey, levels.levels[i]);
+                if (improvement != null) {
+                    result[count++] = improvement;
+                }
+            }
+            i++;
+        }
+
+        return count == result.length ? result : Arrays.copyOf(result, count);
     }
 
     public boolean acceptsImprovement(String improvementKey) {
-        return Arrays.stream(improvements)
-                .map(improvement -> improvement.key)
-                .anyMatch(improvementKey::equals);
+        return improvementIndex.containsRow(improvementKey);
     }
 
     public boolean acceptsImprovementLevel(String improvementKey, int level) {
-        return Arrays.stream(improvements)
-                .filter(improvement -> improvementKey.equals(improvement.key))
-                .anyMatch(improvement -> level == improvement.level);
+        return improvementIndex.contains(improvementKey, level);
     }
 
     public void addImprovement(ItemStack itemStack, String improvementKey, int level) {
         removeCollidingImprovements(itemStack, improvementKey, level);
-        NBTHelper.getTag(itemStack).putInt(slotTagKey + ":" + improvementKey, level);
+        NBTHelper.getTag(itemStack).putInt(getImprovementTagKey(improvementKey), level);
     }
 
     public static void addImprovement(ItemStack itemStack, String slot, String improvement, int level) {
@@ -164,35 +284,54 @@ public abstract class ItemModuleMajor extends ItemModule {
     }
 
     public void removeCollidingImprovements(ItemStack itemStack, String improvementKey, int level) {
-        Arrays.stream(improvements)
-                .filter(improvement -> improvementKey.equals(improvement.key))
-                .filter(improvement -> level == improvement.level)
-                .filter(improvement -> improvement.group != null)
-                .map(improvement -> improvement.group)
-                .findFirst()
-                .ifPresent(group -> Arrays.stream(getImprovements(itemStack))
-                        .filter(improvement -> group.equals(improvement.group))
-                        .forEach(improvement -> removeImprovement(itemStack, slotTagKey, improvement.key)));
+        ImprovementData added = improvementIndex.get(improvementKey, level);
+        if (added != null && added.group != null) {
+            Arrays.stream(readImprovements(itemStack))
+                    .filter(improvement -> added.group.equals(improvement.group))
+                    .forEach(improvement -> removeImprovement(itemStack, improvement.key));
+        }
     }
 
     public void removeImprovement(ItemStack itemStack, String improvement) {
-        removeImprovement(itemStack, slotTagKey, improvement);
+        NBTHelper.getTag(itemStack).remove(getImprovementTagKey(improvement));
     }
 
     public static void removeImprovement(ItemStack itemStack, String slot, String improvement) {
         NBTHelper.getTag(itemStack).remove(slot + ":" + improvement);
     }
 
+    @Override
+    protected void setTweaks(TweakData[] tweaks) {
+        super.setTweaks(tweaks);
+
+        improvementTweaks = Arrays.stream(tweaks)
+                .filter(tweak -> tweak.improvement != null)
+                .collect(Collectors.groupingBy(tweak -> tweak.improvement)).entrySet().stream()
+                .collect(ImmutableMap.toImmutableMap(Map.Entry::getKey, entry -> entry.getValue().toArray(new TweakData[0])));
+    }
+
     @Override
     public TweakData[] getTweaks(ItemStack itemStack) {
-        CompoundNBT tag = NBTHelper.getTag(itemStack);
-        String variant = tag.getString(this.variantTagKey);
-        String[] improvementKeys = Arrays.stream(getImprovements(itemStack))
-                .map(improvement -> improvement.key)
-                .toArray(String[]::new);
-        return Arrays.stream(tweaks)
-                .filter(tweak -> variant.equals(tweak.variant) || ArrayUtils.contains(improvementKeys, tweak.improvement))
-                .toArray(TweakData[]::new);
+        TweakData[] variantTweaks = super.getTweaks(itemStack);
+
+        // most modules have no tweaks tied to improvements, in which case the precomputed variant tweaks can be used as is
+        if (improvementTweaks.isEmpty()) {
+            return variantTweaks;
+        }
+
+        String variant = NBTHelper.getTag(itemStack).getString(this.variantTagKey);
+        TweakData[] result = variantTweaks;
+        for (ImprovementData improvement : readImprovements(itemStack)) {
+            TweakData[] tweaks = improvementTweaks.get(improvement.key);
+            if (tweaks != null) {
+                for (TweakData tweak : tweaks) {
+                    if (!variant.equals(tweak.variant) && !ArrayUtils.contains(result, tweak)) {
+                        result = ArrayUtils.add(result, tweak);
+                    }
+                }
+            }
+        }
+        return result;
     }
 
     @Override
@@ -200,9 +339,7 @@ public abstract class ItemModuleMajor extends ItemModule {
         ItemStack[] salvage = super.removeModule(targetStack);
 
         CompoundNBT tag = NBTHelper.getTag(targetStack);
-        Arrays.stream(improvements)
-            .map(improvement -> slotTagKey + ":" + improvement.key)
-            .forEach(tag::remove);
+        improvementTagKeys.values().forEach(tag::remove);
 
         clearProgression(targetStack);
 
@@ -210,54 +347,56 @@ public abstract class ItemModuleMajor extends ItemModule {
     }
 
     @Override
-    public double getDamageModifier(ItemStack itemStack) {
-        return Arrays.stream(getImprovements(itemStack))
+    public double getDamageModifier(ItemStack itemStack, TweakSteps tweakSteps) {
+        return Arrays.stream(readImprovements(itemStack))
                 .mapToDouble(improvement -> improvement.damage)
-                .sum() + super.getDamageModifier(itemStack);
+                .sum() + super.getDamageModifier(itemStack, tweakSteps);
     }
 
     @Override
-    public double getDamageMultiplierModifier(ItemStack itemStack) {
-        return Arrays.stream(getImprovements(itemStack))
+    public double getDamageMultiplierModifier(ItemStack itemStack, TweakSteps tweakSteps) {
+        return Arrays.stream(readImprovements(itemStack))
                 .map(improvement -> improvement.damageMultiplier)
-                .reduce((float) super.getDamageMultiplierModifier(itemStack), (a, b) -> a * b);
+                .reduce((float) super.getDamageMultiplierModifier(itemStack, tweakSteps), (a, b) -> a * b);
     }
 
     @Override
-    public double getSpeedModifier(ItemStack itemStack) {
-        return Arrays.stream(getImprovements(itemStack))
+    public double getSpeedModifier(ItemStack itemStack, TweakSteps tweakSteps) {
+        return Arrays.stream(readImprovements(itemStack))
                 .mapToDouble(improvement -> improvement.attackSpeed)
-                .sum() + super.getSpeedModifier(itemStack);
+                .sum() + super.getSpeedModifier(itemStack, tweakSteps);
     }
 
     @Override
-    public double getSpeedMultiplierModifier(ItemStack itemStack) {
-        return Arrays.stream(getImprovements(itemStack))
+    public double getSpeedMultiplierModifier(ItemStack itemStack, TweakSteps tweakSteps) {
+        return Arrays.stream(readImprovements(itemStack))
                 .map(improvement -> improvement.attackSpeedMultiplier)
-                .reduce((float) super.getSpeedMultiplierModifier(itemStack), (a, b) -> a * b);
+                .reduce((float) super.getSpeedMultiplierModifier(itemStack, tweakSteps), (a, b) -> a * b);
     }
 
     @Override
     public int getEffectLevel(ItemStack itemStack, ItemEffect effect) {
-        return Arrays.stream(getImprovements(itemStack))
-                .map(improvement -> improvement.effects)
-                .mapToInt(effects -> effects.getLevel(effect))
-                .sum() + super.getEffectLevel(itemStack, effect);
+        int level = super.getEffectLevel(itemStack, effect);
+        for (ImprovementData improvement : readImprovements(itemStack)) {
+            level += improvement.effects.getLevel(effect);
+        }
+        return level;
     }
 
     @Override
-    public float getEffectEfficiency(ItemStack itemStack, ItemEffect effect) {
-        return (float) Arrays.stream(getImprovements(itemStack))
-                .map(improvement -> improvement.effects)
-                .mapToDouble(effects -> effects.getEfficiency(effect))
-                .sum() + super.getEffectLevel(itemStack, effect);
+    public float getEffectEfficiency(ItemStack itemStack, TweakSteps tweakSteps, ItemEffect effect) {
+        float efficiency = super.getEffectLevel(itemStack, effect);
+        for (ImprovementData improvement : readImprovements(itemStack)) {
+            efficiency += improvement.effects.getEfficiency(effect);
+        }
+        return efficiency;
     }
 
     @Override
     public Collection<ItemEffect> getEffects(ItemStack itemStack) {
         return Streams.concat(
                 super.getEffects(itemStack).stream(),
-                Arrays.stream(getImprovements(itemStack))
+                Arrays.stream(readImprovements(itemStack))
                         .map(improvement -> improvement.effects)
                         .flatMap(effects -> effects.getValues().stream()))
                 .distinct()
@@ -266,25 +405,27 @@ public abstract class ItemModuleMajor extends ItemModule {
 
     @Override
     public int getCapabilityLevel(ItemStack itemStack, Capability capability) {
-        return Arrays.stream(getImprovements(itemStack))
-                .map(improvementData -> improvementData.capabilities)
-                .mapToInt(capabilityData -> capabilityData.getLevel(capability))
-                .sum() + super.getCapabilityLevel(itemStack, capability);
+        int level = super.getCapabilityLevel(itemStack, capability);
+        for (ImprovementData improvement : readImprovements(itemStack)) {
+            level += improvement.capabilities.getLevel(capability);
+        }
+        return level;
     }
 
     @Override
-    public float getCapabilityEfficiency(ItemStack itemStack, Capability capability) {
-        return (float) Arrays.stream(getImprovements(itemStack))
-                .map(improvementData -> improvementData.capabilities)
-                .mapToDouble(capabilityData -> capabilityData.getEfficiency(capability))
-                .sum() + super.getCapabilityEfficiency(itemStack, capability);
+    public float getCapabilityEfficiency(ItemStack itemStack, TweakSteps tweakSteps, Capability capability) {
+        float efficiency = super.getCapabilityEfficiency(itemStack, tweakSteps, capability);
+        for (ImprovementData improvement : readImprovements(itemStack)) {
+            efficiency += improvement.capabilities.getEfficiency(capability);
+        }
+        return efficiency;
     }
 
     @Override
     public Collection<Capability> getCapabilities(ItemStack itemStack) {
         return Streams.concat(
                 super.getCapabilities(itemStack).stream(),
-                Arrays.stream(getImprovements(itemStack))
+                Arrays.stream(readImprovements(itemStack))
                         .map(improvement -> improvement.capabilities)
                         .flatMap(capabilities -> capabilities.getValues().stream()))
                 .distinct()
@@ -302,14 +443,14 @@ public abstract class ItemModuleMajor extends ItemModule {
     }
 
     private int getImprovementIntegrityGain(ItemStack itemStack) {
-        return Arrays.stream(getImprovements(itemStack))
+        return Arrays.stream(readImprovements(itemStack))
                 .mapToInt(improvement -> improvement.integrity)
                 .filter(integrity -> integrity > 0)
                 .sum();
     }
 
     private int getImprovementIntegrityCost(ItemStack itemStack) {
-        return Arrays.stream(getImprovements(itemStack))
+        return Arrays.stream(readImprovements(itemStack))
                 .mapToInt(improvement -> improvement.integrity)
                 .filter(integrity -> integrity < 0)
                 .sum();
@@ -326,32 +467,32 @@ public abstract class ItemModuleMajor extends ItemModule {
     }
 
     private int getImprovementMagicCapacityGain(ItemStack itemStack) {
-        return Arrays.stream(getImprovements(itemStack))
+        return Arrays.stream(readImprovements(itemStack))
                 .mapToInt(improvement -> improvement.magicCapacity)
                 .filter(magicCapacity -> magicCapacity > 0)
                 .sum();
     }
 
     private int getImprovementMagicCapacityCost(ItemStack itemStack) {
-        return -Arrays.stream(getImprovements(itemStack))
+        return -Arrays.stream(readImprovements(itemStack))
                 .mapToInt(improvement -> improvement.magicCapacity)
                 .filter(integrity -> integrity < 0)
                 .sum();
     }
 
     @Override
-    public int getDurability(ItemStack itemStack) {
-        return (int)((super.getDurability(itemStack) + getImprovementDurability(itemStack)) * getImprovementDurabilityMultiplier(itemStack));
+    public int getDurability(ItemStack itemStack, TweakSteps tweakSteps) {
+        return (int)((super.getDurability(itemStack, tweakSteps) + getImprovementDurability(itemStack)) * getImprovementDurabilityMultiplier(itemStack));
     }
 
     private int getImprovementDurability(ItemStack itemStack) {
-        return Arrays.stream(getImprovements(itemStack))
+        return Arrays.stream(readImprovements(itemStack))
                 .mapToInt(improvement -> improvement.durability)
                 .sum();
     }
 
     private double getImprovementDurabilityMultiplier(ItemStack itemStack) {
-        return Arrays.stream(getImprovements(itemStack))
+        return Arrays.stream(readImprovements(itemStack))
                 .mapToDouble(improvement -> improvement.durabilityMultiplier)
                 .filter(integrity -> integrity > 0)
                 .reduce(1, (a, b) -> a * b);
@@ -366,7 +507,7 @@ public abstract class ItemModuleMajor extends ItemModule {
     }
 
     protected ResourceLocation[] getImprovementTextures(ItemStack itemStack) {
-        return Arrays.stream(getImprovements(itemStack))
+        return Arrays.stream(readImprovements(itemStack))
                 .filter(improvement -> improvement.textured)
                 .map(improvement -> "items/module/" + improvement.key)
                 .map(resourceString -> new ResourceLocation(TetraMod.MOD_ID, resourceString))
@@ -379,16 +520,52 @@ public abstract class ItemModuleMajor extends ItemModule {
     }
 
     protected ModuleModel[] getImprovementModels(ItemStack itemStack, int tint) {
-        return Arrays.stream(getImprovements(itemStack))
+        return Arrays.stream(readImprovements(itemStack))
                 .filter(improvement -> improvement.textured)
                 .flatMap(improvement -> Arrays.stream(improvement.models))
                 .map(model -> ItemColors.inherit == model.tint ? new ModuleModel(model.type, model.location, tint) : model)
                 .toArray(ModuleModel[]::new);
     }
 
+    @Override
+    public String getModelKey(ItemStack itemStack) {
+        StringBuilder builder = new StringBuilder(super.getModelKey(itemStack));
+        for (ImprovementData improvement : readImprovements(itemStack)) {
+            if (improvement.textured) {
+                builder.append(",").append(improvement.key).append(":").append(improvement.level);
+            }
+        }
+        return builder.toString();
+    }
+
     @Override
     public ModuleModel[] getModels(ItemStack itemStack) {
         ModuleModel[] models = super.getModels(itemStack);
         return ArrayUtils.addAll(models, getImprovementModels(itemStack, models.length > 0 ? models[0].tint : 0xffffff));
     }
+
+    /**
+     * The level of each improvement available for a module, in the order of the improvement tag keys.
+     */
+    private static class ImprovementLevels {
+        private static final int absent = Integer.MIN_VALUE;
+
+        private final int[] levels;
+        private final int hash;
+
+        private ImprovementLevels(int[] levels) {
+            this.levels = levels;
+            hash = Arrays.hashCode(levels);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ImprovementLevels && Arrays.equals(levels, ((ImprovementLevels) o).levels);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
 }
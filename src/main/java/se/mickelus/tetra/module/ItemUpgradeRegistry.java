@@ -1,9 +1,17 @@
 package se.mickelus.tetra.module;
 
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimap;
 import net.minecraft.enchantment.Enchantment;
 import net.minecraft.enchantment.EnchantmentHelper;
 import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
+import net.minecraft.tags.ItemTags;
 import net.minecraft.util.ResourceLocation;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -14,6 +22,7 @@ import se.mickelus.tetra.module.data.EnchantmentMapping;
 import se.mickelus.tetra.module.schema.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -24,12 +33,23 @@ public class ItemUpgradeRegistry {
 
     private List<Function<ItemStack, ItemStack>> replacementFunctions;
     private List<ReplacementDefinition> replacementDefinitions;
+    private Map<Item, List<ReplacementDefinition>> itemReplacements;
+    private Set<Item> unreplaceableItems;
+    // replacement predicates may match items by tag, items that are unreplaceable for one set of tags may be replaceable for the next
+    private volatile int unreplaceableTagGeneration = -1;
 
     private Map<String, UpgradeSchema> schemaMap;
     private Map<String, RepairDefinition> repairMap;
 
     private Map<String, ItemModule> moduleMap;
 
+    // keys of schemas and repair definitions registered from each schema data entry
+    private Multimap<ResourceLocation, String> configSchemaKeys;
+    private Multimap<ResourceLocation, String> configRepairKeys;
+
+    private ListMultimap<String, EnchantmentMapping> improvementEnchantments;
+    private ListMultimap<Enchantment, EnchantmentMapping> enchantmentImprovements;
+
     public ItemUpgradeRegistry() {
         instance = this;
         replacementFunctions = new ArrayList<> ();
@@ -37,34 +57,76 @@ public class ItemUpgradeRegistry {
         repairMap = new HashMap<>();
         moduleMap = new HashMap<>();
 
+        improvementEnchantments = ImmutableListMultimap.of();
+        enchantmentImprovements = ImmutableListMultimap.of();
+        DataManager.enchantmentData.onReload(() -> {
+            List<EnchantmentMapping> mappings = DataManager.enchantmentData.getData().values().stream()
+                    .flatMap(Arrays::stream)
+                    .filter(mapping -> mapping.enchantment != null)
+                    .collect(Collectors.toList());
+
+            improvementEnchantments = mappings.stream()
+                    .filter(mapping -> mapping.improvement != null)
+                    .filter(mapping -> mapping.apply)
+                    .collect(ImmutableListMultimap.toImmutableListMultimap(mapping -> mapping.improvement, mapping -> mapping));
+
+            enchantmentImprovements = mappings.stream()
+                    .filter(mapping -> mapping.extract)
+                    .collect(ImmutableListMultimap.toImmutableListMultimap(mapping -> mapping.enchantment, mapping -> mapping));
+        });
+
         replacementDefinitions = Collections.emptyList();
+        itemReplacements = Collections.emptyMap();
+        unreplaceableItems = ConcurrentHashMap.newKeySet();
         DataManager.replacementData.onReload(() -> {
-            replacementDefinitions = DataManager.replacementData.getData().values().stream()
+            List<ReplacementDefinition> definitions = DataManager.replacementData.getData().values().stream()
                     .flatMap(Arrays::stream)
                     .filter(replacementDefinition -> replacementDefinition.predicate != null)
                     .collect(Collectors.toList());
+
+            // definitions that cannot be indexed by item are kept as a fallback, and are also merged into every item bucket so that the
+            // order in which definitions are tested matches the order they were loaded in
+            replacementDefinitions = definitions.stream()
+                    .filter(replacementDefinition -> replacementDefinition.predicateItem == null)
+                    .collect(ImmutableList.toImmutableList());
+
+            itemReplacements = definitions.stream()
+                    .map(replacementDefinition -> replacementDefinition.predicateItem)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .collect(ImmutableMap.toImmutableMap(Function.identity(), item -> definitions.stream()
+                            .filter(replacementDefinition -> replacementDefinition.predicateItem == null
+                                    || replacementDefinition.predicateItem == item)
+                            .collect(ImmutableList.toImmutableList())));
+
+            unreplaceableItems.clear();
         });
 
-        DataManager.schemaData.onReload(() -> {
-            DataManager.schemaData.getData().values().stream()
-                    .flatMap(Arrays::stream)
-                    .forEach(definition -> {
-                        if (definition.slots.length == definition.keySuffixes.length) {
-                            for (int i = 0; i < definition.slots.length; i++) {
-                                try {
-                                    registerConfigSchema(definition,
-                                            new ConfigSchema(definition, definition.keySuffixes[i], definition.slots[i]));
-                                } catch (InvalidSchemaException e) {
-                                    e.printMessage();
-                                }
-                            }
-                        } else {
-                            try {
-                                registerConfigSchema(definition, new ConfigSchema(definition));
-                            } catch (InvalidSchemaException e) {
-                                e.printMessage();
-                            }
-                        }
+        configSchemaKeys = HashMultimap.create();
+        configRepairKeys = HashMultimap.create();
+        DataManager.schemaData.onChange(changes -> {
+            changes.getAll().forEach(this::unregisterConfigSchemas);
+            changes.getChanged().forEach(this::registerConfigSchemas);
+        });
+
+        // schemas are validated against the modules they produce, so schemas that use changed modules are registered again. This relies
+        // on the module registry having set up its modules first, which is the case as its listener is registered first
+        DataManager.moduleData.onChange(changes -> {
+            Set<String> changedModules = changes.getAll().stream()
+                    .filter(key -> TetraMod.MOD_ID.equals(key.getNamespace()))
+                    .map(ResourceLocation::getPath)
+                    .collect(Collectors.toSet());
+
+            DataManager.schemaData.getData().entrySet().stream()
+                    .filter(entry -> entry.getValue() != null)
+                    .filter(entry -> Arrays.stream(entry.getValue())
+                            .flatMap(definition -> Arrays.stream(definition.outcomes))
+                            .anyMatch(outcome -> changedModules.contains(outcome.moduleKey)))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList())
+                    .forEach(dataKey -> {
+                        unregisterConfigSchemas(dataKey);
+                        registerConfigSchemas(dataKey);
                     });
         });
     }
@@ -94,18 +156,58 @@ public class ItemUpgradeRegistry {
         schemaMap.put(upgradeSchema.getKey(), upgradeSchema);
     }
 
-    private void registerConfigSchema(SchemaDefinition definition, ConfigSchema schema) {
+    /**
+     * Registers schemas and repair definitions from the given schema data entry, schemas that fail validation are skipped.
+     */
+    private void registerConfigSchemas(ResourceLocation dataKey) {
+        SchemaDefinition[] definitions = DataManager.schemaData.getData(dataKey);
+        if (definitions == null) {
+            return;
+        }
+
+        Arrays.stream(definitions).forEach(definition -> {
+            if (definition.slots.length == definition.keySuffixes.length) {
+                for (int i = 0; i < definition.slots.length; i++) {
+                    try {
+                        registerConfigSchema(dataKey, definition,
+                                new ConfigSchema(definition, definition.keySuffixes[i], definition.slots[i]));
+                    } catch (InvalidSchemaException e) {
+                        e.printMessage();
+                    }
+                }
+            } else {
+                try {
+                    registerConfigSchema(dataKey, definition, new ConfigSchema(definition));
+                } catch (InvalidSchemaException e) {
+                    e.printMessage();
+                }
+            }
+        });
+    }
+
+    private void registerConfigSchema(ResourceLocation dataKey, SchemaDefinition definition, ConfigSchema schema) {
         registerSchema(schema);
+        configSchemaKeys.put(dataKey, schema.getKey());
 
         if (definition.repair) {
             for (OutcomeDefinition outcomeDefinition: definition.outcomes) {
                 if (RepairDefinition.validateOutcome(outcomeDefinition)) {
-                    registerRepairDefinition(new RepairDefinition(outcomeDefinition));
+                    RepairDefinition repairDefinition = new RepairDefinition(outcomeDefinition);
+                    registerRepairDefinition(repairDefinition);
+                    configRepairKeys.put(dataKey, repairDefinition.moduleVariant);
                 }
             }
         }
     }
 
+    /**
+     * Removes schemas and repair definitions that were registered from the given schema data entry.
+     */
+    private void unregisterConfigSchemas(ResourceLocation dataKey) {
+        configSchemaKeys.removeAll(dataKey).forEach(schemaMap::remove);
+        configRepairKeys.removeAll(dataKey).forEach(repairMap::remove);
+    }
+
     public void registerRepairDefinition(RepairDefinition definition) {
         repairMap.put(definition.moduleVariant, definition);
     }
@@ -116,10 +218,28 @@ public class ItemUpgradeRegistry {
 
     public void registerReplacementFunction(Function<ItemStack, ItemStack> replacementFunction) {
         replacementFunctions.add(replacementFunction);
+        unreplaceableItems.clear();
     }
 
+    /**
+     * Get a modular replacement for the given itemstack, replacement definitions are looked up by the item of the stack and items that
+     * are known to never be replaced are skipped without testing any predicates.
+     * @param itemStack The itemstack to find a replacement for
+     * @return A modular replacement, or an empty itemstack if there is no replacement for the given itemstack
+     */
     public ItemStack getReplacement(ItemStack itemStack) {
-        for (ReplacementDefinition replacementDefinition: replacementDefinitions) {
+        Item item = itemStack.getItem();
+        if (unreplaceableTagGeneration != ItemTags.getGeneration()) {
+            unreplaceableItems.clear();
+            unreplaceableTagGeneration = ItemTags.getGeneration();
+        }
+
+        if (unreplaceableItems.contains(item)) {
+            return ItemStack.EMPTY;
+        }
+
+        boolean itemOnly = true;
+        for (ReplacementDefinition replacementDefinition: itemReplacements.getOrDefault(item, replacementDefinitions)) {
             if (replacementDefinition.predicate.test(itemStack)) {
                 ItemStack replacementStack = replacementDefinition.itemStack.copy();
                 replacementStack.setDamage(itemStack.getDamage());
@@ -127,13 +247,22 @@ public class ItemUpgradeRegistry {
 
                 return replacementStack;
             }
+
+            itemOnly = itemOnly && replacementDefinition.itemOnlyPredicate;
         }
+
         for (Function<ItemStack, ItemStack> replacementFunction: replacementFunctions) {
             ItemStack replacementStack = replacementFunction.apply(itemStack);
             if (replacementStack != null) {
                 return replacementStack;
             }
         }
+
+        // none of the tested predicates depend on anything but the item, no other stack of this item can have a replacement either
+        if (itemOnly && replacementFunctions.isEmpty()) {
+            unreplaceableItems.add(item);
+        }
+
         return ItemStack.EMPTY;
     }
 
@@ -166,22 +295,38 @@ public class ItemUpgradeRegistry {
         }
     }
 
-    public EnchantmentMapping[] getEnchantmentMappings(String improvement) {
-        return DataManager.enchantmentData.getData().values().stream()
-                .flatMap(Arrays::stream)
-                .filter(mapping -> mapping.enchantment != null)
-                .filter(mapping -> improvement.equals(mapping.improvement))
-                .filter(mapping -> mapping.apply)
-                .toArray(EnchantmentMapping[]::new);
+    /**
+     * Get mappings for enchantments that should be applied to items that have the given improvement.
+     * @param improvement An improvement key
+     * @return A list of mappings, empty if no enchantments map to the given improvement
+     */
+    public List<EnchantmentMapping> getEnchantmentMappings(String improvement) {
+        return improvementEnchantments.get(improvement);
+    }
+
+    /**
+     * Get mappings for improvements that the given enchantment should be extracted into.
+     * @param enchantment An enchantment
+     * @return A list of mappings, empty if the enchantment does not map to any improvement
+     */
+    public List<EnchantmentMapping> getEnchantmentMappings(Enchantment enchantment) {
+        return enchantmentImprovements.get(enchantment);
     }
 
-    public EnchantmentMapping[] getEnchantmentMappings(Enchantment enchantment) {
-        return DataManager.enchantmentData.getData().values().stream()
-                .flatMap(Arrays::stream)
-                .filter(mapping -> mapping.enchantment != null)
-                .filter(mapping -> enchantment.equals(mapping.enchantment))
-                .filter(mapping -> mapping.extract)
-                .toArray(EnchantmentMapping[]::new);
+    /**
+     * Get the sum of multipliers for all mappings between the given improvement and enchantment.
+     * @param improvement An improvement key
+     * @param enchantment An enchantment
+     * @return The summed multiplier, or 0 if the improvement does not map to the enchantment
+     */
+    public float getEnchantmentMultiplier(String improvement, Enchantment enchantment) {
+        float multiplier = 0;
+        for (EnchantmentMapping mapping : improvementEnchantments.get(improvement)) {
+            if (enchantment.equals(mapping.enchantment)) {
+                multiplier += mapping.multiplier;
+            }
+        }
+        return multiplier;
     }
 
     public void registerModule(String key, ItemModule module) {
@@ -1,5 +1,7 @@
 package se.mickelus.tetra.module;
 
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
 import net.minecraft.util.ResourceLocation;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -10,6 +12,7 @@ import se.mickelus.tetra.module.data.ModuleData;
 
 import java.util.*;
 import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class ModuleRegistry {
@@ -20,26 +23,61 @@ public class ModuleRegistry {
     private Map<ResourceLocation, BiFunction<ResourceLocation, ModuleData, ItemModule>> moduleConstructors;
     private Map<ResourceLocation, ItemModule> moduleMap;
 
+    // identifiers of the modules set up from each module data entry, multislot modules set up several modules from the same entry
+    private Multimap<ResourceLocation, ResourceLocation> moduleIdentifiers;
+
     public ModuleRegistry() {
         instance = this;
 
         moduleConstructors = new HashMap<>();
         moduleMap = Collections.emptyMap();
+        moduleIdentifiers = HashMultimap.create();
 
-        DataManager.moduleData.onReload(() -> {
-            setupModules(DataManager.moduleData.getData());
+        DataManager.moduleData.onChange(changes -> {
+            setupModules(changes.getAll());
             logger.debug(moduleMap);
         });
+
+        // modules hold on to the tweaks and improvements they use, so modules that use changed tweaks or improvements are set up again
+        DataManager.tweakData.onChange(changes -> setupModules(getDependentModules(changes.getAll(),
+                data -> Collections.singleton(data.tweakKey))));
+        DataManager.improvementData.onChange(changes -> setupModules(getDependentModules(changes.getAll(),
+                data -> Arrays.asList(data.improvements))));
     }
 
-    private void setupModules(Map<ResourceLocation, ModuleData> data) {
-        moduleMap = data.entrySet().stream()
+    /**
+     * Sets up modules for the given module data entries again, modules for entries that no longer exist are removed.
+     * @param keys keys for module data entries
+     */
+    private void setupModules(Set<ResourceLocation> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        Map<ResourceLocation, ModuleData> data = DataManager.moduleData.getData();
+        Map<ResourceLocation, ItemModule> result = new HashMap<>(moduleMap);
+
+        keys.forEach(key -> moduleIdentifiers.removeAll(key).forEach(result::remove));
+
+        keys.stream()
+                .filter(data::containsKey)
+                .map(key -> new AbstractMap.SimpleEntry<>(key, data.get(key)))
                 .filter(entry -> validateModuleData(entry.getKey(), entry.getValue()))
-                .flatMap(entry -> expandEntry(entry).stream())
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        entry -> setupModule(entry.getKey(), entry.getValue())
-                ));
+                .forEach(entry -> expandEntry(entry).forEach(pair -> {
+                    result.put(pair.getKey(), setupModule(pair.getKey(), pair.getValue()));
+                    moduleIdentifiers.put(entry.getKey(), pair.getKey());
+                }));
+
+        moduleMap = result;
+    }
+
+    private Set<ResourceLocation> getDependentModules(Set<ResourceLocation> changedKeys,
+            Function<ModuleData, Collection<ResourceLocation>> dependencies) {
+        return DataManager.moduleData.getData().entrySet().stream()
+                .filter(entry -> entry.getValue() != null)
+                .filter(entry -> dependencies.apply(entry.getValue()).stream().anyMatch(changedKeys::contains))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
     }
 
     private boolean validateModuleData(ResourceLocation identifier, ModuleData data) {
@@ -1,6 +1,7 @@
 package se.mickelus.tetra.module;
 
 import net.minecraft.advancements.criterion.ItemPredicate;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 
 /**
@@ -34,6 +35,18 @@ public class ReplacementDefinition {
      */
     public ItemPredicate predicate;
 
+    /**
+     * The item that the predicate matches against, used to index replacements by item. Derived from the "item" field of the predicate,
+     * null if the predicate matches by tag or is of another item predicate type.
+     */
+    public Item predicateItem;
+
+    /**
+     * True if the predicate only depends on the item or tag of a stack (and not on nbt, durability, enchantments etc), so that if it
+     * fails to match a stack it will fail to match any stack of the same item.
+     */
+    public boolean itemOnlyPredicate;
+
     /**
      * The itemstack is generated from the item, modules & improvements json fields, every time a non-modular item
      * is used in a modular manner this itemstack is cloned and used instead of the non-modular item.
@@ -0,0 +1,140 @@
+package se.mickelus.tetra.module;
+
+import net.minecraft.item.ItemStack;
+import se.mickelus.tetra.module.data.SynergyData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Synergies compiled into a form that can be matched efficiently against the modules of an item. Module and variant keys referenced by
+ * synergies are interned to integer ids, and the requirements of each synergy are stored as sorted id arrays along with a bitmask of the
+ * required ids. The bitmask is used to quickly discard synergies that cannot match, the sorted arrays are then used to check that the
+ * item has enough modules for requirements that list the same key several times (e.g. a synergy requiring two axe heads).
+ */
+public class SynergyMatcher {
+
+    public static final SynergyMatcher empty = new SynergyMatcher(new SynergyData[0]);
+
+    private static final SynergyData[] noSynergies = new SynergyData[0];
+
+    private final SynergyData[] synergies;
+
+    private final Map<String, Integer> moduleIds = new HashMap<>();
+    private final Map<String, Integer> variantIds = new HashMap<>();
+
+    private final int[][] requiredModules;
+    private final int[][] requiredVariants;
+    private final long[] moduleMasks;
+    private final long[] variantMasks;
+
+    public SynergyMatcher(SynergyData[] synergies) {
+        this.synergies = synergies;
+
+        requiredModules = new int[synergies.length][];
+        requiredVariants = new int[synergies.length][];
+        moduleMasks = new long[synergies.length];
+        variantMasks = new long[synergies.length];
+
+        for (int i = 0; i < synergies.length; i++) {
+            requiredModules[i] = intern(synergies[i].modules, moduleIds);
+            requiredVariants[i] = intern(synergies[i].moduleVariants, variantIds);
+            moduleMasks[i] = getMask(requiredModules[i]);
+            variantMasks[i] = getMask(requiredVariants[i]);
+        }
+    }
+
+    private static int[] intern(String[] keys, Map<String, Integer> ids) {
+        int[] result = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = ids.computeIfAbsent(keys[i], key -> ids.size());
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Ids beyond 64 share bits, which is fine as the mask is only used to rule out synergies and not to confirm them.
+     */
+    private static long getMask(int[] ids) {
+        long mask = 0;
+        for (int id : ids) {
+            mask |= 1L << (id & 63);
+        }
+        return mask;
+    }
+
+    public SynergyData[] getSynergies() {
+        return synergies;
+    }
+
+    /**
+     * Finds the synergies that are active for the given modules. A synergy is active if all of its required variants or all of its
+     * required modules are present.
+     * @param itemStack The itemstack which the modules are present on, used to resolve module variants
+     * @param modules The modules present on the itemstack
+     * @return The active synergies, in the order they were declared
+     */
+    public SynergyData[] match(ItemStack itemStack, Collection<ItemModule> modules) {
+        if (synergies.length == 0) {
+            return noSynergies;
+        }
+
+        int[] presentModules = new int[modules.size()];
+        int[] presentVariants = new int[modules.size()];
+        int moduleCount = 0;
+        int variantCount = 0;
+        for (ItemModule module : modules) {
+            Integer moduleId = moduleIds.get(module.getUnlocalizedName());
+            if (moduleId != null) {
+                presentModules[moduleCount++] = moduleId;
+            }
+
+            Integer variantId = variantIds.get(module.getVariantData(itemStack).key);
+            if (variantId != null) {
+                presentVariants[variantCount++] = variantId;
+            }
+        }
+
+        if (moduleCount == 0 && variantCount == 0) {
+            return noSynergies;
+        }
+
+        presentModules = Arrays.copyOf(presentModules, moduleCount);
+        presentVariants = Arrays.copyOf(presentVariants, variantCount);
+        Arrays.sort(presentModules);
+        Arrays.sort(presentVariants);
+        long moduleMask = getMask(presentModules);
+        long variantMask = getMask(presentVariants);
+
+        ArrayList<SynergyData> result = new ArrayList<>();
+        for (int i = 0; i < synergies.length; i++) {
+            if (matches(requiredVariants[i], variantMasks[i], presentVariants, variantMask)
+                    || matches(requiredModules[i], moduleMasks[i], presentModules, moduleMask)) {
+                result.add(synergies[i]);
+            }
+        }
+
+        return result.isEmpty() ? noSynergies : result.toArray(new SynergyData[result.size()]);
+    }
+
+    private static boolean matches(int[] required, long requiredMask, int[] present, long presentMask) {
+        if (required.length == 0 || required.length > present.length || (requiredMask & presentMask) != requiredMask) {
+            return false;
+        }
+
+        // both arrays are sorted, walk them in parallel to check that every required id is present (including duplicates)
+        int matched = 0;
+        for (int i = 0; i < present.length && matched < required.length; i++) {
+            if (present[i] == required[matched]) {
+                matched++;
+            } else if (present[i] > required[matched]) {
+                return false;
+            }
+        }
+        return matched == required.length;
+    }
+}
@@ -1,38 +1,129 @@
 package se.mickelus.tetra.module.data;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.function.LongSupplier;
 
-public class EnumTierData<T extends Enum> {
+/**
+ * Levels and efficiencies for the constants of an enum, backed by primitive arrays indexed by the ordinal of the constant. A bitmask keeps
+ * track of which constants have a level or efficiency set, constants without a set value have a level and efficiency of 0.
+ */
+public class EnumTierData<T extends Enum<T>> {
 
-    public Map<T, Integer> valueMap;
-    public Map<T, Float> efficiencyMap;
+    private final T[] constants;
 
-    public EnumTierData() {
-        valueMap = new HashMap<>();
-        efficiencyMap = new HashMap<>();
+    private final int[] levels;
+    private final float[] efficiencies;
+
+    private long levelMask = 0;
+    private long efficiencyMask = 0;
+
+    private final Set<T> values;
+    private final Set<T> efficiencyValues;
+
+    public EnumTierData(Class<T> enumClass) {
+        constants = enumClass.getEnumConstants();
+
+        if (constants.length > Long.SIZE) {
+            throw new IllegalArgumentException("Tier data can hold at most " + Long.SIZE + " values, "
+                    + enumClass.getSimpleName() + " has " + constants.length);
+        }
+
+        levels = new int[constants.length];
+        efficiencies = new float[constants.length];
+
+        values = new MaskView(() -> levelMask);
+        efficiencyValues = new MaskView(() -> efficiencyMask);
     }
 
-    public boolean contains(T capability) {
-        return valueMap.containsKey(capability);
+    public boolean contains(T value) {
+        return (levelMask & 1L << value.ordinal()) != 0;
     }
 
-    public int getLevel(T capability) {
-        if (contains(capability)) {
-            return valueMap.get(capability);
-        }
-        return 0;
+    public int getLevel(T value) {
+        return levels[value.ordinal()];
     }
 
-    public float getEfficiency(T capability) {
-        if (efficiencyMap.containsKey(capability)) {
-            return efficiencyMap.get(capability);
-        }
-        return 0;
+    public void setLevel(T value, int level) {
+        levels[value.ordinal()] = level;
+        levelMask |= 1L << value.ordinal();
+    }
+
+    public float getEfficiency(T value) {
+        return efficiencies[value.ordinal()];
+    }
+
+    public void setEfficiency(T value, float efficiency) {
+        efficiencies[value.ordinal()] = efficiency;
+        efficiencyMask |= 1L << value.ordinal();
+    }
+
+    /**
+     * @return a bitmask where each set bit represents the ordinal of a value that has a level
+     */
+    public long getLevelMask() {
+        return levelMask;
+    }
+
+    public boolean isEmpty() {
+        return levelMask == 0 && efficiencyMask == 0;
     }
 
+    /**
+     * @return a read only view of all values that have a level
+     */
     public Set<T> getValues() {
-        return valueMap.keySet();
+        return values;
+    }
+
+    /**
+     * @return a read only view of all values that have an efficiency
+     */
+    public Set<T> getEfficiencyValues() {
+        return efficiencyValues;
+    }
+
+    private class MaskView extends AbstractSet<T> {
+        private final LongSupplier mask;
+
+        MaskView(LongSupplier mask) {
+            this.mask = mask;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Enum && ((Enum) o).getDeclaringClass() == constants.getClass().getComponentType()
+                    && (mask.getAsLong() & 1L << ((Enum) o).ordinal()) != 0;
+        }
+
+        @Override
+        public int size() {
+            return Long.bitCount(mask.getAsLong());
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private long remaining = mask.getAsLong();
+
+                @Override
+                public boolean hasNext() {
+                    return remaining != 0;
+                }
+
+                @Override
+                public T next() {
+                    if (remaining == 0) {
+                        throw new NoSuchElementException();
+                    }
+
+                    int ordinal = Long.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    return constants[ordinal];
+                }
+            };
+        }
     }
 }
@@ -1,5 +1,11 @@
 package se.mickelus.tetra.module.data;
 
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+
 /**
  * Data for improvements are mostly the same as module data but introduces a few additional fields.
  *
@@ -42,4 +48,30 @@ public class ImprovementData extends ModuleVariantData {
     public int getLevel() {
         return level;
     }
+
+    public static class Adapter extends ModuleVariantData.Adapter<ImprovementData> {
+        public Adapter(Gson gson, TypeAdapter<ImprovementData> delegate) {
+            super(gson, delegate, ImprovementData::new);
+        }
+
+        @Override
+        protected boolean readField(JsonReader in, String name, ImprovementData target) throws IOException {
+            switch (name) {
+                case "level":
+                    target.level = in.nextInt();
+                    return true;
+                case "textured":
+                    target.textured = in.nextBoolean();
+                    return true;
+                case "enchantment":
+                    target.enchantment = in.nextBoolean();
+                    return true;
+                case "group":
+                    target.group = in.nextString();
+                    return true;
+                default:
+                    return super.readField(in, name, target);
+            }
+        }
+    }
 }
@@ -1,9 +1,14 @@
 package se.mickelus.tetra.module.data;
 
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
 import net.minecraft.util.ResourceLocation;
+import se.mickelus.tetra.data.deserializer.StreamingDataAdapter;
 import se.mickelus.tetra.module.Priority;
 import se.mickelus.tetra.util.Filter;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Objects;
 import java.util.stream.Stream;
@@ -69,4 +74,47 @@ public class ModuleData {
 
         return copy;
     }
+
+    public static class Adapter extends StreamingDataAdapter<ModuleData> {
+        public Adapter(Gson gson, TypeAdapter<ModuleData> delegate) {
+            super(gson, delegate);
+        }
+
+        @Override
+        protected ModuleData createInstance() {
+            return new ModuleData();
+        }
+
+        @Override
+        protected boolean readField(JsonReader in, String name, ModuleData target) throws IOException {
+            switch (name) {
+                case "slots":
+                    target.slots = read(in, String[].class);
+                    return true;
+                case "slotSuffixes":
+                    target.slotSuffixes = read(in, String[].class);
+                    return true;
+                case "type":
+                    target.type = read(in, ResourceLocation.class);
+                    return true;
+                case "replace":
+                    target.replace = in.nextBoolean();
+                    return true;
+                case "renderLayer":
+                    target.renderLayer = read(in, Priority.class);
+                    return true;
+                case "tweakKey":
+                    target.tweakKey = read(in, ResourceLocation.class);
+                    return true;
+                case "improvements":
+                    target.improvements = read(in, ResourceLocation[].class);
+                    return true;
+                case "variants":
+                    target.variants = read(in, ModuleVariantData[].class);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
 }
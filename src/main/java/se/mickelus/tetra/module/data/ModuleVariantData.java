@@ -1,9 +1,16 @@
 package se.mickelus.tetra.module.data;
 
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
 import net.minecraft.util.ResourceLocation;
 import se.mickelus.tetra.TetraMod;
+import se.mickelus.tetra.data.deserializer.StreamingDataAdapter;
 import se.mickelus.tetra.module.Priority;
 
+import java.io.IOException;
+import java.util.function.Supplier;
+
 /**
  * ModuleVariantData contain stats and information for a variant of an item module.
  * Example json:
@@ -151,4 +158,74 @@ public class ModuleVariantData {
     public ResourceLocation getTextureLocation() {
         return new ResourceLocation(TetraMod.MOD_ID, "items/module/" + key);
     }
+
+    public static class Adapter<T extends ModuleVariantData> extends StreamingDataAdapter<T> {
+        private final Supplier<T> constructor;
+
+        public Adapter(Gson gson, TypeAdapter<T> delegate, Supplier<T> constructor) {
+            super(gson, delegate);
+            this.constructor = constructor;
+        }
+
+        @Override
+        protected T createInstance() {
+            return constructor.get();
+        }
+
+        @Override
+        protected boolean readField(JsonReader in, String name, T target) throws IOException {
+            switch (name) {
+                case "key":
+                    target.key = in.nextString();
+                    return true;
+                case "namePriority":
+                    target.namePriority = read(in, Priority.class);
+                    return true;
+                case "prefixPriority":
+                    target.prefixPriority = read(in, Priority.class);
+                    return true;
+                case "damage":
+                    target.damage = readFloat(in);
+                    return true;
+                case "damageMultiplier":
+                    target.damageMultiplier = readFloat(in);
+                    return true;
+                case "attackSpeed":
+                    target.attackSpeed = readFloat(in);
+                    return true;
+                case "attackSpeedMultiplier":
+                    target.attackSpeedMultiplier = readFloat(in);
+                    return true;
+                case "durability":
+                    target.durability = in.nextInt();
+                    return true;
+                case "durabilityMultiplier":
+                    target.durabilityMultiplier = readFloat(in);
+                    return true;
+                case "integrity":
+                    target.integrity = in.nextInt();
+                    return true;
+                case "integrityMultiplier":
+                    target.integrityMultiplier = readFloat(in);
+                    return true;
+                case "effects":
+                    target.effects = read(in, EffectData.class);
+                    return true;
+                case "glyph":
+                    target.glyph = read(in, GlyphData.class);
+                    return true;
+                case "capabilities":
+                    target.capabilities = read(in, CapabilityData.class);
+                    return true;
+                case "models":
+                    target.models = read(in, ModuleModel[].class);
+                    return true;
+                case "magicCapacity":
+                    target.magicCapacity = in.nextInt();
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
 }
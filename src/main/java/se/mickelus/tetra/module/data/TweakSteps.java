@@ -0,0 +1,17 @@
+package se.mickelus.tetra.module.data;
+
+/**
+ * The tweaks that apply to a module on an itemstack, along with the step each tweak is set to. Resolved once and passed to the stat
+ * getters of the module when several stats are read from the same itemstack.
+ */
+public class TweakSteps {
+    public static final TweakSteps empty = new TweakSteps(new TweakData[0], new int[0]);
+
+    public final TweakData[] tweaks;
+    public final int[] steps;
+
+    public TweakSteps(TweakData[] tweaks, int[] steps) {
+        this.tweaks = tweaks;
+        this.steps = steps;
+    }
+}
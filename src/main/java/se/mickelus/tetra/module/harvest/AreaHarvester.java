@@ -0,0 +1,208 @@
+package se.mickelus.tetra.module.harvest;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.item.ItemEntity;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraftforge.common.ToolType;
+import net.minecraftforge.event.entity.EntityJoinWorldEvent;
+import net.minecraftforge.eventbus.api.EventPriority;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.items.ItemHandlerHelper;
+import se.mickelus.tetra.ToolClassification;
+import se.mickelus.tetra.module.ItemEffectHandler;
+import se.mickelus.tetra.network.PacketHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Breaks several blocks at once as a player, e.g. for sweeping strikes. Compared to breaking the blocks one by one this resolves the
+ * harvest level of the tool once, reads block states section by section, merges item drops into as few item entities as possible and
+ * sends block break effects to the breaking player in a single packet.
+ *
+ * Blocks are still broken one at a time through {@link ItemEffectHandler#breakBlock}, so that break events are fired and blocks get to
+ * handle their own harvesting and experience drops. Item entities that join the world while blocks are broken are captured, only those
+ * are merged.
+ */
+public class AreaHarvester {
+
+    // item entities spawned by the harvest in progress, null when not harvesting. Harvesting only happens on the server thread
+    private static List<ItemEntity> capturedDrops = null;
+
+    private static final Comparator<BlockPos> sectionOrder = Comparator.<BlockPos>comparingInt(pos -> pos.getX() >> 4)
+            .thenComparingInt(pos -> pos.getZ() >> 4)
+            .thenComparingInt(pos -> pos.getY() >> 4);
+
+    /**
+     * Orients a pattern of offsets based on the direction a player is facing. Patterns are expected to be defined as if the player is
+     * facing south.
+     * @param pattern offsets relative to the origin of the harvest
+     * @param facing the horizontal direction the player is facing
+     * @param mirror true if the pattern should be mirrored along the x axis before it is rotated
+     * @return a new array of oriented offsets
+     */
+    public static BlockPos[] orient(BlockPos[] pattern, Direction facing, boolean mirror) {
+        return Arrays.stream(pattern)
+                .map(pos -> mirror ? new BlockPos(-pos.getX(), pos.getY(), pos.getZ()) : pos)
+                .map(pos -> rotate(pos, facing))
+                .toArray(BlockPos[]::new);
+    }
+
+    private static BlockPos rotate(BlockPos pos, Direction facing) {
+        switch (facing) {
+            default:
+            case SOUTH:
+                return pos;
+            case WEST:
+                return new BlockPos(-pos.getZ(), pos.getY(), pos.getX());
+            case NORTH:
+                return new BlockPos(-pos.getX(), pos.getY(), -pos.getZ());
+            case EAST:
+                return new BlockPos(pos.getZ(), pos.getY(), -pos.getX());
+        }
+    }
+
+    /**
+     * Breaks all blocks in the given pattern that the given tool is effective on and can harvest. Only does something on the server.
+     * @param world the world in which to break blocks
+     * @param breakingPlayer the player which is breaking the blocks
+     * @param toolStack the itemstack used to break the blocks
+     * @param tool the type of tool used, only blocks that this tool is effective on are broken
+     * @param originPos the position which the pattern is relative to
+     * @param pattern offsets from the origin position of the blocks that should be broken, see {@link #orient(BlockPos[], Direction, boolean)}
+     * @return the number of blocks that were broken
+     */
+    public static int harvest(World world, PlayerEntity breakingPlayer, ItemStack toolStack, ToolType tool, BlockPos originPos,
+            BlockPos[] pattern) {
+        if (world.isRemote) {
+            return 0;
+        }
+
+        // the harvest level of tetra tools does not depend on the block, it only has to be resolved once
+        int toolLevel = toolStack.getItem().getHarvestLevel(toolStack, tool, breakingPlayer, null);
+
+        BlockPos[] positions = Arrays.stream(pattern)
+                .map(originPos::add)
+                .filter(World::isValid)
+                .sorted(sectionOrder)
+                .toArray(BlockPos[]::new);
+
+        List<BlockPos> targetPositions = new ArrayList<>(positions.length);
+        List<BlockState> targetStates = new ArrayList<>(positions.length);
+
+        Chunk chunk = null;
+        for (BlockPos pos : positions) {
+            if (chunk == null || chunk.getPos().x != pos.getX() >> 4 || chunk.getPos().z != pos.getZ() >> 4) {
+                chunk = world.getChunk(pos.getX() >> 4, pos.getZ() >> 4);
+            }
+
+            ChunkSection section = chunk.getSections()[pos.getY() >> 4];
+            if (ChunkSection.isEmpty(section)) {
+                continue;
+            }
+
+            BlockState blockState = section.getBlockState(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+
+            // make sure that only blocks which require the same tool are broken
+            if (ToolClassification.isToolEffective(tool, blockState)
+                    && ((toolLevel >= 0 && toolLevel >= blockState.getBlock().getHarvestLevel(blockState))
+                    || toolStack.canHarvestBlock(blockState))) {
+                targetPositions.add(pos);
+                targetStates.add(blockState);
+            }
+        }
+
+        BreakEffectsPacket effectsPacket = new BreakEffectsPacket();
+        int brokenCount = 0;
+        List<ItemEntity> previousDrops = capturedDrops;
+        List<ItemEntity> drops = new ArrayList<>();
+        capturedDrops = drops;
+        try {
+            for (int i = 0; i < targetPositions.size(); i++) {
+                BlockPos pos = targetPositions.get(i);
+                BlockState blockState = targetStates.get(i);
+
+                // breaking a block may have caused nearby blocks to break or change
+                if (world.getBlockState(pos) != blockState) {
+                    continue;
+                }
+
+                int experience = ItemEffectHandler.breakBlockDeferExperience(world, breakingPlayer, toolStack, pos, blockState);
+                if (experience >= 0) {
+                    brokenCount++;
+
+                    if (experience > 0) {
+                        blockState.getBlock().dropXpOnBlockBreak(world, pos, experience);
+                    }
+
+                    effectsPacket.add(pos, Block.getStateId(blockState));
+                }
+            }
+        } finally {
+            capturedDrops = previousDrops;
+        }
+
+        mergeDrops(drops);
+
+        // the break effect has to be sent the player separately as it's sent to the others inside Block.onBlockHarvested
+        if (!effectsPacket.isEmpty() && breakingPlayer instanceof ServerPlayerEntity) {
+            PacketHandler.sendTo(effectsPacket, (ServerPlayerEntity) breakingPlayer);
+        }
+
+        return brokenCount;
+    }
+
+    /**
+     * Blocks drop their items through their own harvest logic, so drops are captured as they join the world and merged after all blocks
+     * have been broken.
+     */
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public static void onEntityJoinWorld(EntityJoinWorldEvent event) {
+        if (capturedDrops != null && !event.getWorld().isRemote && event.getEntity() instanceof ItemEntity) {
+            capturedDrops.add((ItemEntity) event.getEntity());
+        }
+    }
+
+    /**
+     * Merges the given item entities into as few entities as possible.
+     */
+    private static void mergeDrops(List<ItemEntity> drops) {
+        for (int i = 0; i < drops.size(); i++) {
+            ItemEntity target = drops.get(i);
+            ItemStack targetStack = target.getItem();
+            if (!target.isAlive() || targetStack.getCount() >= targetStack.getMaxStackSize()) {
+                continue;
+            }
+
+            for (int j = i + 1; j < drops.size() && targetStack.getCount() < targetStack.getMaxStackSize(); j++) {
+                ItemEntity source = drops.get(j);
+                ItemStack sourceStack = source.getItem();
+                if (source.isAlive() && ItemHandlerHelper.canItemStacksStack(targetStack, sourceStack)) {
+                    int moved = Math.min(sourceStack.getCount(), targetStack.getMaxStackSize() - targetStack.getCount());
+
+                    targetStack = targetStack.copy();
+                    targetStack.grow(moved);
+                    target.setItem(targetStack);
+
+                    if (moved == sourceStack.getCount()) {
+                        source.remove();
+                    } else {
+                        sourceStack = sourceStack.copy();
+                        sourceStack.shrink(moved);
+                        source.setItem(sourceStack);
+                    }
+                }
+            }
+        }
+    }
+}
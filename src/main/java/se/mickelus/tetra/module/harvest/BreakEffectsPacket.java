@@ -0,0 +1,59 @@
+package se.mickelus.tetra.module.harvest;
+
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.math.BlockPos;
+import se.mickelus.tetra.network.AbstractPacket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays the block break effect (sound & particles) for several blocks on the client, sent to players that break several blocks at once
+ * as vanilla does not send break effects to the player breaking the block.
+ */
+public class BreakEffectsPacket extends AbstractPacket {
+
+    private static final int breakEventType = 2001;
+
+    private List<BlockPos> positions = new ArrayList<>();
+    private List<Integer> stateIds = new ArrayList<>();
+
+    public BreakEffectsPacket() {}
+
+    public void add(BlockPos pos, int stateId) {
+        positions.add(pos);
+        stateIds.add(stateId);
+    }
+
+    public boolean isEmpty() {
+        return positions.isEmpty();
+    }
+
+    @Override
+    public void toBytes(PacketBuffer buffer) {
+        buffer.writeVarInt(positions.size());
+        for (int i = 0; i < positions.size(); i++) {
+            buffer.writeLong(positions.get(i).toLong());
+            buffer.writeVarInt(stateIds.get(i));
+        }
+    }
+
+    @Override
+    public void fromBytes(PacketBuffer buffer) {
+        int count = buffer.readVarInt();
+        positions = new ArrayList<>(count);
+        stateIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            positions.add(BlockPos.fromLong(buffer.readLong()));
+            stateIds.add(buffer.readVarInt());
+        }
+    }
+
+    @Override
+    public void handle(PlayerEntity player) {
+        for (int i = 0; i < positions.size(); i++) {
+            player.world.playEvent(breakEventType, positions.get(i), stateIds.get(i));
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package se.mickelus.tetra.module.improvement;
+
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.inventory.container.Slot;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.item.ItemTossEvent;
+import net.minecraftforge.event.entity.living.LivingDeathEvent;
+import net.minecraftforge.event.entity.living.LivingEquipmentChangeEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import se.mickelus.tetra.items.ItemModular;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Accumulates honing and settling progression for items held by players, so that the stack tag only has to be written to when a honing
+ * or settling milestone is reached rather than every time the item is used. Writing to the tag of a held item causes it to be synced to
+ * the client and invalidates anything that is cached based on the tag.
+ *
+ * Pending progression is written to the stack as soon as it would cause the item to become honeable or a module to settle, when the
+ * item is no longer held, and when the player dies or logs out. Only held items on the server are tracked, progression for other items
+ * is written to the stack directly.
+ *
+ * Moving a held stack in a container or dropping it splits the stack, which hands a copy onward and leaves the tracked stack empty.
+ * Tracked stacks are checked every tick, pending progression for a stack that has been emptied is written to the copy, which is found
+ * by item and tag on the cursor or in the open container. Dropped copies are picked up when they are tossed.
+ */
+public class ProgressionTracker {
+
+    public static ProgressionTracker instance;
+
+    private final Map<UUID, List<PendingProgression>> pending = new HashMap<>();
+
+    public ProgressionTracker() {
+        instance = this;
+    }
+
+    /**
+     * Attempt to defer progression for the given itemstack.
+     * @param entity the entity using the item
+     * @param itemStack a modular itemstack
+     * @param honing the amount of honing progression
+     * @param settle the amount of settling progression
+     * @return true if the progression has been deferred or applied, false if the caller should apply the progression to the stack
+     */
+    public boolean defer(LivingEntity entity, ItemStack itemStack, int honing, int settle) {
+        if (!(entity instanceof ServerPlayerEntity) || !(itemStack.getItem() instanceof ItemModular) || !isHeld(entity, itemStack)) {
+            return false;
+        }
+
+        List<PendingProgression> playerPending = pending.computeIfAbsent(entity.getUniqueID(), uuid -> new ArrayList<>(2));
+        PendingProgression progression = playerPending.stream()
+                .filter(p -> p.itemStack == itemStack)
+                .findFirst()
+                .orElseGet(() -> {
+                    PendingProgression newProgression = new PendingProgression(itemStack);
+                    playerPending.add(newProgression);
+                    return newProgression;
+                });
+
+        progression.honing += honing;
+        progression.settle += settle;
+
+        if (progression.isMilestoneReached()) {
+            playerPending.remove(progression);
+            progression.apply(entity, itemStack);
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes all pending progression for the given player to the respective itemstacks.
+     */
+    public void flush(PlayerEntity player) {
+        List<PendingProgression> playerPending = pending.remove(player.getUniqueID());
+        if (playerPending != null) {
+            playerPending.forEach(progression -> progression.apply(player));
+        }
+    }
+
+    /**
+     * Writes pending progression to itemstacks that the given player is no longer holding.
+     */
+    private void flushUnequipped(PlayerEntity entity) {
+        List<PendingProgression> playerPending = pending.get(entity.getUniqueID());
+        if (playerPending != null) {
+            Iterator<PendingProgression> iterator = playerPending.iterator();
+            while (iterator.hasNext()) {
+                PendingProgression progression = iterator.next();
+                if (!isHeld(entity, progression.itemStack)) {
+                    iterator.remove();
+                    progression.apply(entity);
+                }
+            }
+
+            if (playerPending.isEmpty()) {
+                pending.remove(entity.getUniqueID());
+            }
+        }
+    }
+
+    private static boolean isHeld(LivingEntity entity, ItemStack itemStack) {
+        return entity.getHeldItemMainhand() == itemStack || entity.getHeldItemOffhand() == itemStack;
+    }
+
+    @SubscribeEvent
+    public void onEquipmentChange(LivingEquipmentChangeEvent event) {
+        if (event.getEntityLiving() instanceof ServerPlayerEntity) {
+            flushUnequipped((PlayerEntity) event.getEntityLiving());
+        }
+    }
+
+    /**
+     * Held items are not always replaced by other stacks when they are moved (e.g. when swapped for an identical stack), which would
+     * not cause an equipment change. Those are picked up here, every tick so that a copy split from a tracked stack can still be found
+     * where the split put it.
+     */
+    @SubscribeEvent
+    public void onPlayerTick(TickEvent.PlayerTickEvent event) {
+        if (event.phase == TickEvent.Phase.START && event.player instanceof ServerPlayerEntity) {
+            flushUnequipped(event.player);
+        }
+    }
+
+    /**
+     * Dropping a held item splits it, the tossed stack is the copy that should receive pending progression.
+     */
+    @SubscribeEvent
+    public void onItemToss(ItemTossEvent event) {
+        List<PendingProgression> playerPending = pending.get(event.getPlayer().getUniqueID());
+        if (playerPending != null) {
+            ItemStack tossedStack = event.getEntityItem().getItem();
+            playerPending.stream()
+                    .filter(progression -> progression.itemStack.isEmpty() && progression.matches(tossedStack))
+                    .findFirst()
+                    .ifPresent(progression -> {
+                        playerPending.remove(progression);
+                        progression.apply(event.getPlayer(), tossedStack);
+                    });
+        }
+    }
+
+    @SubscribeEvent
+    public void onLivingDeath(LivingDeathEvent event) {
+        if (event.getEntityLiving() instanceof ServerPlayerEntity) {
+            flush((PlayerEntity) event.getEntityLiving());
+        }
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        flush(event.getPlayer());
+    }
+
+    private static class PendingProgression {
+        private final ItemStack itemStack;
+        // emptied stacks report air as their item, so the item is kept to be able to match copies
+        private final Item item;
+
+        private int honing = 0;
+        private int settle = 0;
+
+        // the amount of progression that can be held back before a milestone is reached
+        private final int honingLimit;
+        private final int settleLimit;
+
+        private PendingProgression(ItemStack itemStack) {
+            this.itemStack = itemStack;
+            this.item = itemStack.getItem();
+
+            ItemModular item = (ItemModular) this.item;
+            honingLimit = ItemModular.isHoneable(itemStack) ? Integer.MAX_VALUE : item.getHoningProgress(itemStack);
+            settleLimit = Arrays.stream(item.getMajorModules(itemStack))
+                    .filter(Objects::nonNull)
+                    .filter(module -> module.isSettling(itemStack))
+                    .mapToInt(module -> module.getSettleProgress(itemStack))
+                    .min()
+                    .orElse(Integer.MAX_VALUE);
+        }
+
+        private boolean isMilestoneReached() {
+            return honing >= honingLimit || settle >= settleLimit;
+        }
+
+        /**
+         * @return true if the given stack is a copy of the tracked stack, split stacks keep the tag of the stack they were split from
+         */
+        private boolean matches(ItemStack copy) {
+            return copy != itemStack && copy.getItem() == item && Objects.equals(copy.getTag(), itemStack.getTag());
+        }
+
+        private void apply(PlayerEntity player) {
+            if (!itemStack.isEmpty()) {
+                apply(player, itemStack);
+            } else {
+                Stream.concat(Stream.of(player.inventory.getItemStack()), player.openContainer.inventorySlots.stream().map(Slot::getStack))
+                        .filter(this::matches)
+                        .findFirst()
+                        .ifPresent(copy -> apply(player, copy));
+            }
+        }
+
+        private void apply(LivingEntity entity, ItemStack target) {
+            if (target.getItem() instanceof ItemModular) {
+                ((ItemModular) target.getItem()).applyProgression(entity, target, honing, settle);
+            }
+        }
+    }
+}
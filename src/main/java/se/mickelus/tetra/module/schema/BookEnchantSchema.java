@@ -73,7 +73,7 @@ public class BookEnchantSchema implements UpgradeSchema {
         return module != null && !materialStack.isEmpty() && materialStack.getItem() instanceof EnchantedBookItem
                 && EnchantmentHelper.getEnchantments(materialStack).entrySet().stream()
                 .anyMatch(entry -> {
-                    return Arrays.stream(ItemUpgradeRegistry.instance.getEnchantmentMappings(entry.getKey()))
+                    return ItemUpgradeRegistry.instance.getEnchantmentMappings(entry.getKey()).stream()
                             .anyMatch(mapping ->
                                     module.acceptsImprovementLevel(mapping.improvement, (int) (entry.getValue() / mapping.multiplier)));
                 });
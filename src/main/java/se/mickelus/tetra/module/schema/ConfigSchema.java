@@ -298,9 +298,9 @@ public class ConfigSchema extends BaseSchema {
                     ModuleCraftCriterion.trigger((ServerPlayerEntity) player, itemStack, upgradedStack, getKey(), slot, outcome.moduleKey,
                             outcome.moduleVariant, null, -1);
                 } else {
-                    outcome.requiredCapabilities.valueMap.forEach((capability, capabilityLevel) ->
+                    outcome.requiredCapabilities.getValues().forEach(capability ->
                             ModuleCraftCriterion.trigger((ServerPlayerEntity) player, itemStack, upgradedStack, getKey(), slot, outcome.moduleKey,
-                                    outcome.moduleVariant, capability, capabilityLevel));
+                                    outcome.moduleVariant, capability, outcome.requiredCapabilities.getLevel(capability)));
                 }
             }
 
@@ -308,9 +308,9 @@ public class ConfigSchema extends BaseSchema {
                 if (outcome.requiredCapabilities.getValues().isEmpty()) {
                     ImprovementCraftCriterion.trigger((ServerPlayerEntity) player, itemStack, upgradedStack, getKey(), slot, improvement, level, null, -1);
                 } else {
-                    outcome.requiredCapabilities.valueMap.forEach((capability, capabilityLevel) ->
+                    outcome.requiredCapabilities.getValues().forEach(capability ->
                             ImprovementCraftCriterion.trigger((ServerPlayerEntity) player, itemStack, upgradedStack, getKey(), slot, improvement, level,
-                            capability, capabilityLevel));
+                            capability, outcome.requiredCapabilities.getLevel(capability)));
                 }
             });
         }
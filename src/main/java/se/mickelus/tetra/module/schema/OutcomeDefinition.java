@@ -1,7 +1,13 @@
 package se.mickelus.tetra.module.schema;
 
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import se.mickelus.tetra.data.deserializer.StreamingDataAdapter;
 import se.mickelus.tetra.module.data.CapabilityData;
 
+import java.io.IOException;
 import java.util.HashMap;
 
 /**
@@ -81,4 +87,46 @@ public class OutcomeDefinition {
      * }
      */
     public HashMap<String, Integer> improvements = new HashMap<>();
+
+    public static class Adapter extends StreamingDataAdapter<OutcomeDefinition> {
+        private static final TypeToken<HashMap<String, Integer>> improvementsType = new TypeToken<HashMap<String, Integer>>() {};
+
+        public Adapter(Gson gson, TypeAdapter<OutcomeDefinition> delegate) {
+            super(gson, delegate);
+        }
+
+        @Override
+        protected OutcomeDefinition createInstance() {
+            return new OutcomeDefinition();
+        }
+
+        @Override
+        protected boolean readField(JsonReader in, String name, OutcomeDefinition target) throws IOException {
+            switch (name) {
+                case "material":
+                    target.material = read(in, Material.class);
+                    return true;
+                case "materialSlot":
+                    target.materialSlot = in.nextInt();
+                    return true;
+                case "experienceCost":
+                    target.experienceCost = in.nextInt();
+                    return true;
+                case "requiredCapabilities":
+                    target.requiredCapabilities = read(in, CapabilityData.class);
+                    return true;
+                case "moduleKey":
+                    target.moduleKey = in.nextString();
+                    return true;
+                case "moduleVariant":
+                    target.moduleVariant = in.nextString();
+                    return true;
+                case "improvements":
+                    target.improvements = read(in, improvementsType);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
 }
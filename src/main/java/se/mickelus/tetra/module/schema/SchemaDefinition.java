@@ -1,8 +1,14 @@
 package se.mickelus.tetra.module.schema;
 
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
 import net.minecraft.advancements.criterion.ItemPredicate;
+import se.mickelus.tetra.data.deserializer.StreamingDataAdapter;
 import se.mickelus.tetra.module.data.GlyphData;
 
+import java.io.IOException;
+
 /**
  * Schemas define how players craft new modules, and which materials yield which module variant.
  * Example json:
@@ -119,4 +125,62 @@ public class SchemaDefinition {
      * An array of all potential outcomes of this schema.
      */
     public OutcomeDefinition[] outcomes = new OutcomeDefinition[0];
+
+    public static class Adapter extends StreamingDataAdapter<SchemaDefinition> {
+        public Adapter(Gson gson, TypeAdapter<SchemaDefinition> delegate) {
+            super(gson, delegate);
+        }
+
+        @Override
+        protected SchemaDefinition createInstance() {
+            return new SchemaDefinition();
+        }
+
+        @Override
+        protected boolean readField(JsonReader in, String name, SchemaDefinition target) throws IOException {
+            switch (name) {
+                case "key":
+                    target.key = in.nextString();
+                    return true;
+                case "localizationKey":
+                    target.localizationKey = in.nextString();
+                    return true;
+                case "slots":
+                    target.slots = read(in, String[].class);
+                    return true;
+                case "keySuffixes":
+                    target.keySuffixes = read(in, String[].class);
+                    return true;
+                case "materialSlotCount":
+                    target.materialSlotCount = in.nextInt();
+                    return true;
+                case "repair":
+                    target.repair = in.nextBoolean();
+                    return true;
+                case "hone":
+                    target.hone = in.nextBoolean();
+                    return true;
+                case "requirement":
+                    target.requirement = read(in, ItemPredicate.class);
+                    return true;
+                case "materialRevealSlot":
+                    target.materialRevealSlot = in.nextInt();
+                    return true;
+                case "displayType":
+                    target.displayType = read(in, SchemaType.class);
+                    return true;
+                case "rarity":
+                    target.rarity = read(in, SchemaRarity.class);
+                    return true;
+                case "glyph":
+                    target.glyph = read(in, GlyphData.class);
+                    return true;
+                case "outcomes":
+                    target.outcomes = read(in, OutcomeDefinition[].class);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
 }
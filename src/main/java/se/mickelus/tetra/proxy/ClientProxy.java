@@ -15,6 +15,7 @@ import se.mickelus.tetra.blocks.salvage.CapabililtyInteractiveOverlay;
 import se.mickelus.tetra.blocks.workbench.WorkbenchTESR;
 import se.mickelus.tetra.blocks.workbench.WorkbenchTile;
 import se.mickelus.tetra.blocks.workbench.gui.WorkbenchScreen;
+import se.mickelus.tetra.client.model.ModularModelBaker;
 import se.mickelus.tetra.generation.ExtendedStructureTESR;
 import se.mickelus.tetra.items.ITetraItem;
 
@@ -28,6 +29,8 @@ public class ClientProxy implements IProxy {
 
     @Override
     public void init(FMLCommonSetupEvent event, ITetraItem[] items, ITetraBlock[] blocks) {
+        MinecraftForge.EVENT_BUS.register(new ModularModelBaker());
+
         Arrays.stream(items).forEach(ITetraItem::clientInit);
         Arrays.stream(blocks).forEach(ITetraBlock::clientInit);
 
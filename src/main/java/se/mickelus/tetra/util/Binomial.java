@@ -0,0 +1,77 @@
+package se.mickelus.tetra.util;
+
+import java.util.Random;
+
+/**
+ * Draws samples from a binomial distribution, i.e. the number of successes out of a number of independent trials that all have the
+ * same probability of success. Used in place of running each trial separately when the number of trials can be large.
+ */
+public class Binomial {
+
+    // below this many trials, running each trial is cheaper than the alternatives
+    private static final int directThreshold = 16;
+
+    // above this mean the distribution is close enough to a normal distribution
+    private static final double normalThreshold = 10;
+
+    /**
+     * Samples the number of successful trials.
+     * @param random the random source
+     * @param trials the number of trials
+     * @param probability the probability that a single trial succeeds
+     * @return the number of successes, between 0 and the number of trials
+     */
+    public static int sample(Random random, int trials, double probability) {
+        if (trials <= 0 || probability <= 0) {
+            return 0;
+        }
+
+        if (probability >= 1) {
+            return trials;
+        }
+
+        if (probability > 0.5) {
+            return trials - sample(random, trials, 1 - probability);
+        }
+
+        if (trials < directThreshold) {
+            int successes = 0;
+            for (int i = 0; i < trials; i++) {
+                if (random.nextDouble() < probability) {
+                    successes++;
+                }
+            }
+            return successes;
+        }
+
+        double mean = trials * probability;
+        if (mean < normalThreshold) {
+            return sampleInversion(random, trials, probability);
+        }
+
+        double deviation = Math.sqrt(mean * (1 - probability));
+        long sample = Math.round(mean + deviation * random.nextGaussian());
+        return (int) Math.max(0, Math.min(trials, sample));
+    }
+
+    /**
+     * Walks the cumulative distribution until it passes a uniformly drawn value, the expected number of steps is proportional to the
+     * mean which is kept small by the caller.
+     */
+    private static int sampleInversion(Random random, int trials, double probability) {
+        double failure = 1 - probability;
+        double ratio = probability / failure;
+        double factor = (trials + 1) * ratio;
+        double current = Math.pow(failure, trials);
+        double remaining = random.nextDouble();
+
+        int successes = 0;
+        while (remaining > current && successes < trials) {
+            remaining -= current;
+            successes++;
+            current *= factor / successes - ratio;
+        }
+
+        return successes;
+    }
+}